@@ -0,0 +1,185 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nonnull;
+
+import hudson.util.Secret;
+import net.sf.json.JSONObject;
+
+/**
+ * Caches OAuth2 access tokens per (token URL, credential identity) so that
+ * fetching several secrets, in one build or in many, costs one token grant
+ * instead of one per secret.
+ * <p>
+ * A token is reused until {@link #EXPIRY_MARGIN_MILLIS}, or half its lifetime
+ * if that is shorter, before it expires. It is then renewed with the refresh
+ * token, if the server issued one, or with a new password grant. Renewal
+ * happens under a per-key lock so concurrent callers share a single request.
+ * <p>
+ * Tokens that haven't been used for {@link #IDLE_MILLIS}, e.g. because their
+ * credential was changed or deleted, are forgotten.
+ */
+public final class AccessTokenCache {
+    private static final Logger LOGGER = Logger.getLogger(AccessTokenCache.class.getName());
+
+    static final long EXPIRY_MARGIN_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    static final long IDLE_MILLIS = TimeUnit.HOURS.toMillis(1);
+    // used when the server doesn't say how long the token lives
+    private static final long DEFAULT_LIFETIME_MILLIS = TimeUnit.MINUTES.toMillis(20);
+
+    private static final Map<Key, Entry> TOKENS = new ConcurrentHashMap<>();
+    private static volatile long nextSweep;
+
+    private AccessTokenCache() {
+    }
+
+    /**
+     * Returns a usable access token for this token URL and credential,
+     * requesting a new one only if the cached one is missing or about to expire.
+     *
+     * @param tokenUrl           the Secret Server OAuth2 token URL
+     * @param credentialIdentity the identity of the Jenkins credential, see
+     *                           {@link SecretServerClient#getCredentialIdentity()}
+     * @param username           the username of that credential
+     * @param password           the password of that credential
+     * @return the access token
+     * @throws IOException if the token could not be obtained
+     */
+    public static String get(@Nonnull final String tokenUrl, final String credentialIdentity,
+            @Nonnull final String username, @Nonnull final Secret password) throws IOException {
+        final long now = System.currentTimeMillis();
+
+        if (now >= nextSweep) {
+            nextSweep = now + IDLE_MILLIS / 4;
+            TOKENS.values().removeIf(entry -> now - entry.lastUsed > IDLE_MILLIS);
+        }
+        final Entry entry = TOKENS.computeIfAbsent(new Key(tokenUrl, credentialIdentity), Entry::new);
+
+        entry.lastUsed = now;
+        return entry.get(username, password);
+    }
+
+    /**
+     * Forgets the token for this token URL and credential, e.g. because the
+     * server rejected it before its expiry.
+     */
+    public static void invalidate(@Nonnull final String tokenUrl, final String credentialIdentity) {
+        final Entry entry = TOKENS.get(new Key(tokenUrl, credentialIdentity));
+
+        if (entry != null) {
+            entry.invalidate();
+        }
+    }
+
+    private static final class Key {
+        private final String tokenUrl, credentialIdentity;
+
+        Key(final String tokenUrl, final String credentialIdentity) {
+            this.tokenUrl = tokenUrl;
+            this.credentialIdentity = credentialIdentity;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return Objects.equals(tokenUrl, other.tokenUrl)
+                    && Objects.equals(credentialIdentity, other.credentialIdentity);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tokenUrl, credentialIdentity);
+        }
+    }
+
+    private static final class Entry {
+        private final Key key;
+        private String username;
+        private Secret password, accessToken, refreshToken;
+        // when the token is renewed, ahead of its expiry
+        private long renewAt;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        Entry(final Key key) {
+            this.key = key;
+        }
+
+        synchronized String get(final String username, final Secret password) throws IOException {
+            if (!username.equals(this.username) || !password.equals(this.password)) {
+                // the credential was created or changed, so whatever we have is for the old one
+                this.username = username;
+                this.password = password;
+                this.accessToken = this.refreshToken = null;
+            }
+            if (accessToken != null && System.currentTimeMillis() < renewAt) {
+                return accessToken.getPlainText();
+            }
+            if (refreshToken != null) {
+                final Map<String, String> form = new LinkedHashMap<>();
+
+                form.put("grant_type", "refresh_token");
+                form.put("refresh_token", refreshToken.getPlainText());
+                try {
+                    return update(grant(form));
+                } catch (final IOException e) {
+                    LOGGER.log(Level.FINE, "Refreshing the access token from " + key.tokenUrl
+                            + " failed; falling back to the password grant", e);
+                }
+            }
+            final Map<String, String> form = new LinkedHashMap<>();
+
+            form.put("grant_type", "password");
+            form.put("username", username);
+            form.put("password", password.getPlainText());
+            return update(grant(form));
+        }
+
+        synchronized void invalidate() {
+            accessToken = null;
+        }
+
+        private JSONObject grant(final Map<String, String> form) throws IOException {
+            final long start = System.nanoTime();
+
+            try {
+                return HttpSupport.postForm(key.tokenUrl, form);
+            } catch (final IOException e) {
+                SecretServerMetrics.error(e);
+                throw e;
+            } finally {
+                SecretServerMetrics.TOKEN.stop(start);
+            }
+        }
+
+        private String update(final JSONObject response) throws IOException {
+            final String token = HttpSupport.optString(response, "access_token");
+
+            if (token == null) {
+                throw new IOException(key.tokenUrl + " did not return an access_token");
+            }
+            final String refresh = HttpSupport.optString(response, "refresh_token");
+            final long lifetime = response.has("expires_in")
+                    ? TimeUnit.SECONDS.toMillis(response.optLong("expires_in"))
+                    : DEFAULT_LIFETIME_MILLIS;
+
+            accessToken = Secret.fromString(token);
+            refreshToken = refresh == null ? null : Secret.fromString(refresh);
+            renewAt = System.currentTimeMillis() + lifetime - Math.min(EXPIRY_MARGIN_MILLIS, lifetime / 2);
+            return token;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import jenkins.security.MasterToSlaveCallable;
+
+/**
+ * Fetches secrets on a build agent, so that the calls to Secret Server, the
+ * JSON parsing and the fields that aren't mapped stay off the controller. The
+ * controller sends only a short-lived access token and what to fetch; the
+ * agent sends back only the fields that are needed.
+ * <p>
+ * The agent must be able to reach Secret Server. What it fetches isn't cached
+ * on the controller, and the token isn't refreshed: a fetch that it is
+ * refused for fails.
+ */
+public final class AgentFetcher extends MasterToSlaveCallable<List<AgentFetcher.Result>, IOException> {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Request> requests;
+    private final int threads;
+
+    /**
+     * @param requests what to fetch
+     * @param threads  how many secrets to fetch at a time
+     */
+    public AgentFetcher(@Nonnull final List<Request> requests, final int threads) {
+        this.requests = new ArrayList<>(requests);
+        this.threads = threads;
+    }
+
+    /**
+     * Prepares the fetch of a secret on the controller, getting an access token
+     * for it there.
+     *
+     * @param client the client for the server and credential
+     * @param id     the id of the secret
+     * @param fields the names or slugs of the fields that are needed, or
+     *               {@code null} if all of them are
+     * @return the request
+     * @throws IOException if Secret Server could not be reached or refused the
+     *                     credential
+     */
+    public static Request request(@Nonnull final SecretServerClient client, final int id,
+            @CheckForNull final Collection<String> fields) throws IOException {
+        return new Request(client.getApiRootUrl(), client.getAccessToken(), id,
+                fields == null ? null : new ArrayList<>(fields), SecretFetcher.projection(fields));
+    }
+
+    /**
+     * @return a result per request, in the same order
+     */
+    @Override
+    public List<Result> call() throws IOException {
+        final List<Callable<Result>> tasks = new ArrayList<>(requests.size());
+
+        for (final Request request : requests) {
+            tasks.add(request::fetch);
+        }
+        try {
+            return SecretFetchExecutor.invokeAll(tasks, threads);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching secrets");
+        }
+    }
+
+    /**
+     * A secret to fetch, with the token to fetch it with.
+     */
+    public static final class Request implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String apiRootUrl, accessToken;
+        private final int id;
+        // the fields to send back, or null for all of them
+        private final List<String> fields;
+        // the fields to fetch, or null for the whole secret
+        private final List<String> projection;
+
+        Request(final String apiRootUrl, final String accessToken, final int id, final List<String> fields,
+                final List<String> projection) {
+            this.apiRootUrl = apiRootUrl;
+            this.accessToken = accessToken;
+            this.id = id;
+            this.fields = fields;
+            this.projection = projection;
+        }
+
+        private Result fetch() throws IOException {
+            final long start = System.nanoTime();
+            final FetchTiming timing = new FetchTiming();
+            final SecretServerClient client = HttpSecretServerClient.withAccessToken(apiRootUrl, accessToken);
+
+            timing.setSource(FetchTiming.Source.AGENT);
+            try {
+                final SecretData secret = projection == null ? client.getSecret(id, timing)
+                        : SecretFetcher.getFields(client, id, projection, timing);
+
+                return new Result(only(secret), timing);
+            } finally {
+                timing.setTotalNanos(System.nanoTime() - start);
+            }
+        }
+
+        private SecretData only(final SecretData secret) {
+            if (fields == null) {
+                return secret;
+            }
+            final List<SecretData.Field> needed = new ArrayList<>();
+
+            for (final SecretData.Field field : secret.getFields()) {
+                if (fields.stream().anyMatch(field::matches)) {
+                    needed.add(field);
+                }
+            }
+            return new SecretData(secret.getId(), secret.getName(), needed);
+        }
+    }
+
+    /**
+     * A secret fetched on the agent, with only the fields that are needed, and
+     * how long that took.
+     */
+    public static final class Result implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final SecretData secret;
+        private final FetchTiming timing;
+
+        Result(final SecretData secret, final FetchTiming timing) {
+            this.secret = secret;
+            this.timing = timing;
+        }
+
+        public SecretData getSecret() {
+            return secret;
+        }
+
+        public FetchTiming getTiming() {
+            return timing;
+        }
+    }
+}
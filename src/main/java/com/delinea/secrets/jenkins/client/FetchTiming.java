@@ -0,0 +1,75 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.io.Serializable;
+
+/**
+ * Where the time went while getting one secret through
+ * {@link SecretFetcher}, for reporting. It never holds any secret data.
+ */
+public final class FetchTiming implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Where the secret came from.
+     */
+    public enum Source {
+        /** a fresh cache entry */
+        CACHE,
+        /** a stale cache entry, served while it is revalidated */
+        STALE_CACHE,
+        /** Secret Server */
+        NETWORK,
+        /** a concurrent fetch of the same secret, which this one waited for */
+        SHARED,
+        /** Secret Server, from the build agent */
+        AGENT
+    }
+
+    private volatile Source source;
+    private volatile long tokenNanos, fetchNanos, totalNanos;
+
+    /**
+     * @return where the secret came from, or {@code null} if it hasn't been
+     *         fetched (yet)
+     */
+    public Source getSource() {
+        return source;
+    }
+
+    /**
+     * @return the time spent getting an access token
+     */
+    public long getTokenNanos() {
+        return tokenNanos;
+    }
+
+    /**
+     * @return the time spent in requests for the secret
+     */
+    public long getFetchNanos() {
+        return fetchNanos;
+    }
+
+    /**
+     * @return the time from asking for the secret to getting it
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    void setSource(final Source source) {
+        this.source = source;
+    }
+
+    synchronized void addTokenNanos(final long nanos) {
+        tokenNanos += nanos;
+    }
+
+    synchronized void addFetchNanos(final long nanos) {
+        fetchNanos += nanos;
+    }
+
+    void setTotalNanos(final long totalNanos) {
+        this.totalNanos = totalNanos;
+    }
+}
@@ -0,0 +1,57 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+import javax.annotation.Nonnull;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * Writes the value of a field, e.g. a file attachment, to a file on the node
+ * that the file is on, straight from Secret Server, with an access token that
+ * the controller got. That is how file mappings are fetched on build agents.
+ */
+public final class FieldDownload extends MasterToSlaveFileCallable<Long> {
+    private static final long serialVersionUID = 1L;
+
+    private final String apiRootUrl, accessToken, field;
+    private final int id;
+
+    private FieldDownload(final String apiRootUrl, final String accessToken, final int id, final String field) {
+        this.apiRootUrl = apiRootUrl;
+        this.accessToken = accessToken;
+        this.id = id;
+        this.field = field;
+    }
+
+    /**
+     * Prepares the download on the controller, getting an access token for it
+     * there.
+     *
+     * @param client the client for the server and credential
+     * @param id     the id of the secret
+     * @param field  the name or slug of the field
+     * @return the download, to run with {@code FilePath.act}
+     * @throws IOException if Secret Server could not be reached or refused the
+     *                     credential
+     */
+    public static FieldDownload of(@Nonnull final SecretServerClient client, final int id,
+            @Nonnull final String field) throws IOException {
+        return new FieldDownload(client.getApiRootUrl(), client.getAccessToken(), id, field);
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    @Override
+    public Long invoke(final File file, final VirtualChannel channel) throws IOException, InterruptedException {
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            return HttpSecretServerClient.withAccessToken(apiRootUrl, accessToken).downloadField(id, field, out,
+                    new FetchTiming());
+        }
+    }
+}
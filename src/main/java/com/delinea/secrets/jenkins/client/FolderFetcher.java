@@ -0,0 +1,128 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Fetches all the secrets in a Secret Server folder. The folder is listed a
+ * page at a time and the pages after the first are listed concurrently; the
+ * secrets on each page are fetched, through {@link SecretFetcher}, as soon as
+ * the page arrives, while the other pages are still being listed. All of it
+ * runs on the {@link SecretFetchExecutor}, at most the given number of
+ * requests at a time.
+ */
+public final class FolderFetcher {
+    static final int PAGE_SIZE = 100;
+
+    private FolderFetcher() {
+    }
+
+    /**
+     * @param client  the client for the server and credential
+     * @param folder  the id or the path of the folder
+     * @param fields  the names or slugs of the fields that are needed, or
+     *                {@code null} if all of them are
+     * @param threads how many requests are made at a time
+     * @return the secrets in the folder, in the order that Secret Server lists
+     *         them, each with its name
+     * @throws IOException          if the folder could not be listed or one of
+     *                              its secrets could not be fetched
+     * @throws InterruptedException if the caller was interrupted while waiting
+     */
+    public static List<Result> fetch(@Nonnull final SecretServerClient client, @Nonnull final String folder,
+            @CheckForNull final Collection<String> fields, final int threads)
+            throws IOException, InterruptedException {
+        final String trimmed = folder.trim();
+        final int folderId = !trimmed.isEmpty() && StringUtils.isNumeric(trimmed) ? Integer.parseInt(trimmed)
+                : client.getFolderId(trimmed);
+        final CompletionService<Object> completionService = SecretFetchExecutor.completionService(threads);
+        final List<Future<Object>> futures = new ArrayList<>();
+        // by position in the folder
+        final Map<Integer, Result> results = new TreeMap<>();
+
+        try {
+            futures.add(completionService.submit(() -> client.searchSecrets(folderId, null, 0, PAGE_SIZE,
+                    new FetchTiming())));
+            for (int pending = 1; pending > 0; pending--) {
+                // either a page or a secret
+                final Object done = completionService.take().get();
+
+                if (done instanceof Result) {
+                    results.put(((Result) done).position, (Result) done);
+                    continue;
+                }
+                final SecretPage page = (SecretPage) done;
+
+                if (page.getSkip() == 0) {
+                    // the first page tells how many there are
+                    for (int skip = PAGE_SIZE; skip < page.getTotal(); skip += PAGE_SIZE) {
+                        final int pageSkip = skip;
+
+                        futures.add(completionService.submit(() -> client.searchSecrets(folderId, null, pageSkip,
+                                PAGE_SIZE, new FetchTiming())));
+                        pending++;
+                    }
+                }
+                for (int i = 0; i < page.getSecrets().size(); i++) {
+                    final int position = page.getSkip() + i;
+                    final SecretPage.Summary summary = page.getSecrets().get(i);
+
+                    futures.add(completionService.submit(() -> fetch(client, summary, fields, position)));
+                    pending++;
+                }
+            }
+            return new ArrayList<>(results.values());
+        } catch (final ExecutionException e) {
+            throw SecretFetchExecutor.rethrow(e.getCause());
+        } finally {
+            SecretFetchExecutor.cancel(futures);
+        }
+    }
+
+    private static Result fetch(final SecretServerClient client, final SecretPage.Summary summary,
+            final Collection<String> fields, final int position) throws IOException {
+        final FetchTiming timing = new FetchTiming();
+        SecretData secret = SecretFetcher.fetch(client, summary.getId(), fields, timing);
+
+        if (secret.getName() == null) {
+            // only some of its fields were fetched
+            secret = new SecretData(secret.getId(), summary.getName(), secret.getFields());
+        }
+        return new Result(position, secret, timing);
+    }
+
+    /**
+     * A secret in the folder and how it was fetched.
+     */
+    public static final class Result {
+        private final int position;
+        private final SecretData secret;
+        private final FetchTiming timing;
+
+        Result(final int position, final SecretData secret, final FetchTiming timing) {
+            this.position = position;
+            this.secret = secret;
+            this.timing = timing;
+        }
+
+        public SecretData getSecret() {
+            return secret;
+        }
+
+        public FetchTiming getTiming() {
+            return timing;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import hudson.util.Secret;
+import jenkins.security.HMACConfidentialKey;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * The {@link SecretServerClient} that calls the Secret Server REST API over
+ * the pooled {@link HttpTransport} and authenticates with the OAuth2 password
+ * grant through the {@link AccessTokenCache}.
+ */
+public class HttpSecretServerClient implements SecretServerClient {
+    private static final int UNAUTHORIZED = 401;
+    private static final int FOLDER_PAGE_SIZE = 100;
+    // so that identities don't give away the password they are derived from
+    private static final HMACConfidentialKey IDENTITY_KEY = new HMACConfidentialKey(HttpSecretServerClient.class,
+            "credentialIdentity");
+
+    private final String apiRootUrl, tokenUrl, credentialId, credentialIdentity, username;
+    private final Secret password;
+    // set if the client was given a token rather than a credential
+    private final String fixedAccessToken;
+
+    /**
+     * @param apiRootUrl   the Secret Server API root URL e.g. {@code https://tenant.secretservercloud.com/api/v1}
+     * @param tokenUrl     the Secret Server OAuth2 token URL
+     * @param credentialId the id of the Jenkins credential
+     * @param username     the username of that credential
+     * @param password     the password of that credential
+     */
+    public HttpSecretServerClient(@Nonnull final String apiRootUrl, @Nonnull final String tokenUrl,
+            final String credentialId, @Nonnull final String username, @Nonnull final Secret password) {
+        this.apiRootUrl = apiRootUrl;
+        this.tokenUrl = tokenUrl;
+        this.credentialId = credentialId;
+        this.credentialIdentity = identity(credentialId, username, password);
+        this.username = username;
+        this.password = password;
+        this.fixedAccessToken = null;
+    }
+
+    private HttpSecretServerClient(final String apiRootUrl, final String accessToken) {
+        this.apiRootUrl = apiRootUrl;
+        this.tokenUrl = null;
+        this.credentialId = null;
+        this.credentialIdentity = null;
+        this.username = null;
+        this.password = null;
+        this.fixedAccessToken = accessToken;
+    }
+
+    /**
+     * A client that uses an access token that it was given, e.g. on a build
+     * agent, and that fails once it is no longer accepted.
+     */
+    static HttpSecretServerClient withAccessToken(@Nonnull final String apiRootUrl,
+            @Nonnull final String accessToken) {
+        return new HttpSecretServerClient(apiRootUrl, accessToken);
+    }
+
+    @Override
+    public String getApiRootUrl() {
+        return apiRootUrl;
+    }
+
+    @Override
+    public String getCredentialId() {
+        return credentialId;
+    }
+
+    @Override
+    public String getCredentialIdentity() {
+        return credentialIdentity;
+    }
+
+    /**
+     * The identity of a credential: its id with a keyed hash of its username
+     * and password, which are what Secret Server authorizes by. Credentials
+     * with the same id in different folders have the same identity only if they
+     * log in as the same account.
+     */
+    static String identity(final String credentialId, @Nonnull final String username,
+            @Nonnull final Secret password) {
+        return credentialId + ":" + IDENTITY_KEY.mac(username + '\0' + password.getPlainText());
+    }
+
+    @Override
+    public SecretData getSecret(final int id, @Nonnull final FetchTiming timing) throws IOException {
+        return SecretData.fromJson(call(apiRootUrl + "/secrets/" + id, HttpSupport::getJson, timing));
+    }
+
+    @Override
+    public SecretData getSecretFields(final int id, @Nonnull final List<String> fields,
+            @Nonnull final FetchTiming timing) throws IOException {
+        final List<SecretData.Field> values = new ArrayList<>(fields.size());
+
+        for (final String field : fields) {
+            final String slug = slugOf(field);
+            final String url = apiRootUrl + "/secrets/" + id + "/fields/" + encode(slug);
+
+            values.add(new SecretData.Field(field, slug, call(url, HttpSupport::getText, timing), false));
+        }
+        return new SecretData(id, null, values);
+    }
+
+    @Override
+    public long downloadField(final int id, @Nonnull final String field, @Nonnull final OutputStream out,
+            @Nonnull final FetchTiming timing) throws IOException {
+        final String url = apiRootUrl + "/secrets/" + id + "/fields/" + encode(slugOf(field));
+
+        // an error status, including a 401 that is retried, comes before anything is written
+        return call(url, (fieldUrl, accessToken) -> HttpSupport.download(fieldUrl, accessToken, out), timing);
+    }
+
+    @Override
+    public SecretPage searchSecrets(@CheckForNull final Integer folderId, @CheckForNull final String searchText,
+            final int skip, final int take, @Nonnull final FetchTiming timing) throws IOException {
+        final StringBuilder url = new StringBuilder(apiRootUrl).append("/secrets?");
+
+        if (folderId != null) {
+            url.append("filter.folderId=").append(folderId).append("&filter.includeSubFolders=false&");
+        }
+        if (searchText != null) {
+            url.append("filter.searchText=").append(encode(searchText)).append('&');
+        }
+        url.append("skip=").append(skip).append("&take=").append(take);
+        return SecretPage.fromJson(skip, call(url.toString(), HttpSupport::getJson, timing));
+    }
+
+    @Override
+    public int getFolderId(@Nonnull final String path) throws IOException {
+        final List<String> segments = pathSegments(path);
+
+        if (segments.isEmpty()) {
+            throw new IOException("Invalid folder path " + path);
+        }
+        final FetchTiming timing = new FetchTiming();
+        // search by the name of the folder, then pick the one with the whole path
+        final String search = apiRootUrl + "/folders?filter.searchText=" + encode(segments.get(segments.size() - 1))
+                + "&take=" + FOLDER_PAGE_SIZE + "&skip=";
+
+        for (int skip = 0, total = 1; skip < total; skip += FOLDER_PAGE_SIZE) {
+            final JSONObject page = call(search + skip, HttpSupport::getJson, timing);
+            final JSONArray records = page.optJSONArray("records");
+
+            if (records == null || records.isEmpty()) {
+                break;
+            }
+            for (int i = 0; i < records.size(); i++) {
+                final JSONObject record = records.getJSONObject(i);
+
+                if (segments.equals(pathSegments(HttpSupport.optString(record, "folderPath")))) {
+                    return record.getInt("id");
+                }
+            }
+            total = page.optInt("total");
+        }
+        throw new IOException("Folder " + path + " not found");
+    }
+
+    /**
+     * The names in a folder path, in lower case.
+     */
+    static List<String> pathSegments(final String path) {
+        if (path == null) {
+            return new ArrayList<>();
+        }
+        return Stream.of(path.split("[\\\\/]+")).map(String::trim).filter(segment -> !segment.isEmpty())
+                .map(segment -> segment.toLowerCase(Locale.ENGLISH)).collect(Collectors.toList());
+    }
+
+    /**
+     * The slug of a field from its name, e.g. {@code private-key} for
+     * {@code Private Key}; a slug is its own slug.
+     */
+    static String slugOf(final String nameOrSlug) {
+        return nameOrSlug.trim().toLowerCase(Locale.ENGLISH).replaceAll("\\s+", "-");
+    }
+
+    /**
+     * A GET with a bearer token.
+     */
+    private interface Request<T> {
+        T send(String url, String accessToken) throws IOException;
+    }
+
+    private <T> T call(final String url, final Request<T> request, final FetchTiming timing) throws IOException {
+        try {
+            return send(url, request, timing);
+        } catch (final HttpSupport.HttpStatusException e) {
+            if (e.getStatus() != UNAUTHORIZED || fixedAccessToken != null) {
+                throw e;
+            }
+            // the token was revoked or expired early; get a new one and try again
+            AccessTokenCache.invalidate(tokenUrl, credentialIdentity);
+            return send(url, request, timing);
+        }
+    }
+
+    private <T> T send(final String url, final Request<T> request, final FetchTiming timing) throws IOException {
+        final long tokenStart = System.nanoTime();
+        final String accessToken;
+
+        try {
+            accessToken = accessToken();
+        } finally {
+            timing.addTokenNanos(System.nanoTime() - tokenStart);
+        }
+        final long start = System.nanoTime();
+
+        try {
+            return request.send(url, accessToken);
+        } catch (final IOException e) {
+            SecretServerMetrics.error(e);
+            throw e;
+        } finally {
+            final long nanos = System.nanoTime() - start;
+
+            SecretServerMetrics.REQUEST.record(nanos);
+            timing.addFetchNanos(nanos);
+        }
+    }
+
+    private static String encode(final String pathSegment) {
+        try {
+            return URLEncoder.encode(pathSegment, "UTF-8").replace("+", "%20");
+        } catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String getAccessToken() throws IOException {
+        return accessToken();
+    }
+
+    private String accessToken() throws IOException {
+        return fixedAccessToken != null ? fixedAccessToken
+                : AccessTokenCache.get(tokenUrl, credentialIdentity, username, password);
+    }
+}
@@ -0,0 +1,218 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+
+import net.sf.json.JSONException;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+import net.sf.json.util.JSONTokener;
+
+/**
+ * The HTTP plumbing shared by {@link AccessTokenCache} and
+ * {@link HttpSecretServerClient}, on top of the pooled {@link HttpTransport}.
+ */
+final class HttpSupport {
+    private HttpSupport() {
+    }
+
+    /**
+     * Thrown when Secret Server answers with an HTTP error status.
+     */
+    static final class HttpStatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        HttpStatusException(final String method, final String url, final int status, final String error) {
+            super(String.format("%s %s returned HTTP %d%s", method, url, status, error == null ? "" : ": " + error));
+            this.status = status;
+        }
+
+        int getStatus() {
+            return status;
+        }
+    }
+
+    /**
+     * POSTs an {@code application/x-www-form-urlencoded} body and parses the
+     * JSON response.
+     */
+    static JSONObject postForm(final String url, final Map<String, String> form) throws IOException {
+        final List<NameValuePair> parameters = new ArrayList<>();
+
+        for (final Map.Entry<String, String> entry : form.entrySet()) {
+            parameters.add(new BasicNameValuePair(entry.getKey(), entry.getValue()));
+        }
+        final HttpPost post = new HttpPost(uri(url));
+
+        post.setEntity(new UrlEncodedFormEntity(parameters, StandardCharsets.UTF_8));
+        return execute(post);
+    }
+
+    /**
+     * GETs a JSON document using the bearer token for authorization.
+     */
+    static JSONObject getJson(final String url, final String accessToken) throws IOException {
+        final HttpGet get = new HttpGet(uri(url));
+
+        get.setHeader("Authorization", "Bearer " + accessToken);
+        return execute(get);
+    }
+
+    /**
+     * GETs a text value using the bearer token for authorization. The value may
+     * be a JSON string, which is unquoted, or plain text.
+     */
+    static String getText(final String url, final String accessToken) throws IOException {
+        final HttpGet get = new HttpGet(uri(url));
+
+        get.setHeader("Authorization", "Bearer " + accessToken);
+        get.setHeader("Accept", "application/json, text/plain");
+        final Response response = send(get);
+
+        if (response.contentType != null && response.contentType.startsWith("application/json")) {
+            final Object value = jsonValue(url, response.body);
+
+            return value == null ? null : value.toString();
+        }
+        return response.body;
+    }
+
+    private static Object jsonValue(final String url, final String body) throws IOException {
+        try {
+            final Object value = new JSONTokener(body).nextValue();
+
+            return value instanceof JSONNull ? null : value;
+        } catch (final JSONException e) {
+            throw new IOException("GET " + url + " did not return a JSON value", e);
+        }
+    }
+
+    /**
+     * GETs a value using the bearer token for authorization and writes it to
+     * {@code out} as it arrives, without holding it in memory, unless it is a
+     * JSON string, which is unquoted first.
+     *
+     * @return the number of bytes written
+     */
+    static long download(final String url, final String accessToken, final OutputStream out) throws IOException {
+        final HttpGet get = new HttpGet(uri(url));
+
+        get.setHeader("Authorization", "Bearer " + accessToken);
+        get.setHeader("Accept", "application/octet-stream, application/json, */*");
+        try (CloseableHttpResponse response = HttpTransport.execute(get)) {
+            final int status = response.getStatusLine().getStatusCode();
+            final HttpEntity entity = response.getEntity();
+
+            if (status >= 400) {
+                final String body = entity == null ? "" : EntityUtils.toString(entity, StandardCharsets.UTF_8);
+
+                throw new HttpStatusException(get.getMethod(), url, status, errorOf(body));
+            }
+            if (entity == null) {
+                return 0;
+            }
+            if (entity.getContentType() != null && entity.getContentType().getValue().startsWith("application/json")) {
+                // a text field, which is small
+                final Object value = jsonValue(url, EntityUtils.toString(entity, StandardCharsets.UTF_8));
+                final byte[] bytes = value == null ? new byte[0] : value.toString().getBytes(StandardCharsets.UTF_8);
+
+                out.write(bytes);
+                return bytes.length;
+            }
+            final CountingOutputStream counting = new CountingOutputStream(out);
+
+            // in chunks, which also reads it all, so that the connection goes back to the pool
+            entity.writeTo(counting);
+            return counting.getByteCount();
+        }
+    }
+
+    /**
+     * @return the value of the key or {@code null} if it is absent or
+     *         {@code null} in the JSON
+     */
+    static String optString(final JSONObject json, final String key) {
+        final Object value = json.opt(key);
+
+        if (value == null || value instanceof JSONNull) {
+            return null;
+        }
+        return value.toString();
+    }
+
+    private static JSONObject execute(final HttpRequestBase request) throws IOException {
+        request.setHeader("Accept", "application/json");
+        final String body = send(request).body;
+
+        try {
+            return JSONObject.fromObject(body);
+        } catch (final JSONException e) {
+            throw new IOException(request.getMethod() + " " + request.getURI() + " did not return a JSON object", e);
+        }
+    }
+
+    /**
+     * A successful response, read in full.
+     */
+    private static final class Response {
+        private final String body, contentType;
+
+        Response(final String body, final String contentType) {
+            this.body = body;
+            this.contentType = contentType;
+        }
+    }
+
+    private static Response send(final HttpRequestBase request) throws IOException {
+        try (CloseableHttpResponse response = HttpTransport.execute(request)) {
+            final int status = response.getStatusLine().getStatusCode();
+            final HttpEntity entity = response.getEntity();
+            // read it all, so that the connection goes back to the pool
+            final String body = entity == null ? "" : EntityUtils.toString(entity, StandardCharsets.UTF_8);
+
+            if (status >= 400) {
+                throw new HttpStatusException(request.getMethod(), request.getURI().toString(), status, errorOf(body));
+            }
+            return new Response(body,
+                    entity == null || entity.getContentType() == null ? null : entity.getContentType().getValue());
+        }
+    }
+
+    private static String errorOf(final String body) {
+        try {
+            final JSONObject json = JSONObject.fromObject(body);
+            // OAuth2 errors use "error", the REST API uses "message"
+            final String error = optString(json, "error");
+
+            return error != null ? error : optString(json, "message");
+        } catch (final JSONException e) {
+            return null;
+        }
+    }
+
+    private static URI uri(final String url) throws IOException {
+        try {
+            return new URI(url);
+        } catch (final URISyntaxException e) {
+            throw new IOException("Invalid URL: " + url, e);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.Credentials;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.DefaultRoutePlanner;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+
+import hudson.ProxyConfiguration;
+import jenkins.model.Jenkins;
+
+/**
+ * The one HTTP client that all calls to Secret Server go through. Its
+ * connections are pooled and kept alive, so secrets fetched one after the
+ * other, in one build or in many, don't each pay for a TCP and TLS handshake.
+ * <p>
+ * The number of connections to each host and the timeouts are configurable.
+ * Requests go through the Jenkins proxy, if one is configured and the host
+ * isn't exempt from it.
+ */
+public final class HttpTransport {
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 10;
+    public static final int DEFAULT_CONNECT_TIMEOUT_SECONDS = 20;
+    public static final int DEFAULT_READ_TIMEOUT_SECONDS = 60;
+
+    private static final int MAX_CONNECTIONS = 200;
+    // idle connections are closed after this long, before most servers and load balancers drop them
+    private static final long MAX_IDLE_SECONDS = 30;
+    // pooled connections idle for longer than this are checked before they are reused
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+
+    private static final PoolingHttpClientConnectionManager POOL = new PoolingHttpClientConnectionManager();
+    private static final CloseableHttpClient CLIENT;
+    private static volatile RequestConfig requestConfig;
+
+    static {
+        POOL.setMaxTotal(MAX_CONNECTIONS);
+        POOL.setDefaultMaxPerRoute(DEFAULT_MAX_CONNECTIONS_PER_HOST);
+        POOL.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+        CLIENT = HttpClients.custom()
+                .setConnectionManager(POOL)
+                .setRoutePlanner(new JenkinsProxyRoutePlanner())
+                .setDefaultCredentialsProvider(new JenkinsProxyCredentialsProvider())
+                .evictExpiredConnections()
+                .evictIdleConnections(MAX_IDLE_SECONDS, TimeUnit.SECONDS)
+                .disableCookieManagement()
+                .build();
+        requestConfig = requestConfig(DEFAULT_CONNECT_TIMEOUT_SECONDS, DEFAULT_READ_TIMEOUT_SECONDS);
+    }
+
+    private HttpTransport() {
+    }
+
+    /**
+     * Applies the global configuration. It takes effect for the requests that
+     * are made from then on.
+     *
+     * @param maxConnectionsPerHost the maximum number of connections to each
+     *                              host, in use or idle
+     * @param connectTimeoutSeconds how long to wait for a connection, whether
+     *                              new or from the pool
+     * @param readTimeoutSeconds    how long to wait for data
+     */
+    public static void configure(final int maxConnectionsPerHost, final int connectTimeoutSeconds,
+            final int readTimeoutSeconds) {
+        final int perHost = maxConnectionsPerHost > 0 ? maxConnectionsPerHost : DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+        POOL.setDefaultMaxPerRoute(perHost);
+        POOL.setMaxTotal(Math.max(MAX_CONNECTIONS, perHost));
+        requestConfig = requestConfig(
+                connectTimeoutSeconds > 0 ? connectTimeoutSeconds : DEFAULT_CONNECT_TIMEOUT_SECONDS,
+                readTimeoutSeconds > 0 ? readTimeoutSeconds : DEFAULT_READ_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * Executes the request. The response must be closed, which returns the
+     * connection to the pool if its entity was fully read.
+     */
+    static CloseableHttpResponse execute(final HttpRequestBase request) throws IOException {
+        request.setConfig(requestConfig);
+        return CLIENT.execute(request);
+    }
+
+    private static RequestConfig requestConfig(final int connectTimeoutSeconds, final int readTimeoutSeconds) {
+        final int connectTimeout = (int) TimeUnit.SECONDS.toMillis(connectTimeoutSeconds);
+
+        return RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setConnectionRequestTimeout(connectTimeout)
+                .setSocketTimeout((int) TimeUnit.SECONDS.toMillis(readTimeoutSeconds))
+                .build();
+    }
+
+    private static ProxyConfiguration proxyConfiguration() {
+        final Jenkins jenkins = Jenkins.getInstanceOrNull();
+
+        return jenkins == null ? null : jenkins.proxy;
+    }
+
+    /**
+     * Routes requests through the Jenkins proxy as it is configured at the time
+     * of the request, unless the host is exempt.
+     */
+    private static final class JenkinsProxyRoutePlanner extends DefaultRoutePlanner {
+        JenkinsProxyRoutePlanner() {
+            super(DefaultSchemePortResolver.INSTANCE);
+        }
+
+        @Override
+        protected HttpHost determineProxy(final HttpHost target, final HttpRequest request,
+                final HttpContext context) {
+            final ProxyConfiguration proxy = proxyConfiguration();
+
+            if (proxy == null) {
+                return null;
+            }
+            final Proxy selected = proxy.createProxy(target.getHostName());
+
+            if (selected.type() != Proxy.Type.HTTP || !(selected.address() instanceof InetSocketAddress)) {
+                return null;
+            }
+            final InetSocketAddress address = (InetSocketAddress) selected.address();
+
+            return new HttpHost(address.getHostString(), address.getPort());
+        }
+    }
+
+    /**
+     * Answers the proxy's authentication challenges with the credentials of the
+     * Jenkins proxy configuration, and no others.
+     */
+    private static final class JenkinsProxyCredentialsProvider implements CredentialsProvider {
+        @Override
+        public void setCredentials(final AuthScope authscope, final Credentials credentials) {
+            // the Jenkins proxy configuration is the only source of credentials
+        }
+
+        @Override
+        public Credentials getCredentials(final AuthScope authscope) {
+            final ProxyConfiguration proxy = proxyConfiguration();
+
+            if (proxy == null || StringUtils.isEmpty(proxy.getUserName())
+                    || !proxy.name.equalsIgnoreCase(authscope.getHost()) || proxy.port != authscope.getPort()) {
+                return null;
+            }
+            return new UsernamePasswordCredentials(proxy.getUserName(), proxy.getPassword());
+        }
+
+        @Override
+        public void clear() {
+        }
+    }
+}
@@ -0,0 +1,568 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.CheckForNull;
+
+import hudson.util.Secret;
+
+/**
+ * A controller-wide, size-bounded cache of secrets keyed by (API root URL,
+ * secret ID, credential identity), so that a secret is only ever served to the
+ * Secret Server account that fetched it.
+ * <p>
+ * The cache is disabled by default. When enabled, entries are fresh for the
+ * configured time to live and the least recently used entry is evicted when
+ * the cache is full. When serving stale secrets is enabled, entries are kept
+ * for the maximum stale age too, so that they can be served while they are
+ * revalidated or while Secret Server is unreachable. Field values are held
+ * encrypted, with the same key as {@link Secret}, and are only decrypted on a
+ * hit, which is also how {@link SecretCacheStore} keeps them on disk.
+ */
+public final class SecretCache {
+    public static final int DEFAULT_TTL_SECONDS = 300;
+    public static final int DEFAULT_MAX_ENTRIES = 500;
+    public static final int DEFAULT_MAX_STALE_SECONDS = 3600;
+
+    private static final SecretCache INSTANCE = new SecretCache();
+    // the longest string, or the most entries or fields, that is read back
+    private static final int MAX_LENGTH = 1 << 24;
+
+    private boolean enabled, serveStale;
+    private long ttlMillis = TimeUnit.SECONDS.toMillis(DEFAULT_TTL_SECONDS);
+    private long maxStaleMillis = TimeUnit.SECONDS.toMillis(DEFAULT_MAX_STALE_SECONDS);
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    // incremented on every change, so that the store only writes a cache that changed
+    private long modifications;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Key, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    private SecretCache() {
+    }
+
+    public static SecretCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Applies the global configuration. Disabling both caching and serving
+     * stale secrets empties the cache.
+     *
+     * @param enabled         whether fresh secrets are served from the cache
+     * @param ttlSeconds      how long an entry is fresh
+     * @param maxEntries      how many entries are kept
+     * @param serveStale      whether stale secrets are served
+     * @param maxStaleSeconds how long after it was fetched a stale entry is
+     *                        still served
+     */
+    public synchronized void configure(final boolean enabled, final int ttlSeconds, final int maxEntries,
+            final boolean serveStale, final int maxStaleSeconds) {
+        this.enabled = enabled;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(Math.max(0, ttlSeconds));
+        this.maxEntries = Math.max(1, maxEntries);
+        this.serveStale = serveStale;
+        this.maxStaleMillis = TimeUnit.SECONDS.toMillis(Math.max(0, maxStaleSeconds));
+        if (!isActive()) {
+            entries.clear();
+        }
+        // shrink to the new size, least recently used first
+        for (final Iterator<Key> keys = entries.keySet().iterator(); entries.size() > this.maxEntries;) {
+            keys.next();
+            keys.remove();
+        }
+        modifications++;
+    }
+
+    /**
+     * @return whether the cache holds entries at all
+     */
+    public synchronized boolean isActive() {
+        return enabled || serveStale;
+    }
+
+    /**
+     * @return the cached secret, or {@code null} if it is absent or too old to
+     *         be served, fresh or stale
+     */
+    @CheckForNull
+    public Hit lookup(final Key key) {
+        final Entry entry;
+        final long age;
+        final boolean fresh;
+
+        SecretCacheStore.loadOnce();
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            age = System.currentTimeMillis() - entry.fetchedAt;
+            fresh = enabled && age <= ttlMillis;
+            if (!fresh && !(serveStale && age <= maxStaleMillis)) {
+                entries.remove(key);
+                modifications++;
+                return null;
+            }
+        }
+        return new Hit(entry.decrypt(), age, fresh);
+    }
+
+    /**
+     * Caches the secret, if the cache is active.
+     */
+    public void put(final Key key, final SecretData secret) {
+        put(key, secret, Long.MAX_VALUE);
+    }
+
+    /**
+     * Caches the secret, if the cache is active and the secret wasn't
+     * invalidated since {@code sequence} was {@link SecretInvalidation#current()},
+     * in which case it may be the value from before the change.
+     * <p>
+     * The check and the insert are atomic with {@link #invalidate(int)}, which
+     * runs after the invalidation is recorded: either the entry is inserted
+     * first and evicted, or the invalidation is seen and it isn't inserted.
+     */
+    public void put(final Key key, final SecretData secret, final long sequence) {
+        if (!isActive()) {
+            return;
+        }
+        final Entry entry = new Entry(secret, System.currentTimeMillis());
+
+        synchronized (this) {
+            if (isActive() && !SecretInvalidation.isInvalidatedSince(key.secretId, sequence)) {
+                entries.put(key, entry);
+                modifications++;
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Evicts the entry, if there is one.
+     *
+     * @return whether there was one
+     */
+    public synchronized boolean remove(final Key key) {
+        if (entries.remove(key) == null) {
+            return false;
+        }
+        modifications++;
+        return true;
+    }
+
+    /**
+     * Evicts every entry of the secret, whole or projected, on any server and
+     * with any credential.
+     *
+     * @return the keys of the evicted entries
+     */
+    public synchronized List<Key> invalidate(final int secretId) {
+        final List<Key> evicted = new ArrayList<>();
+
+        for (final Iterator<Key> keys = entries.keySet().iterator(); keys.hasNext();) {
+            final Key key = keys.next();
+
+            if (key.secretId == secretId) {
+                evicted.add(key);
+                keys.remove();
+            }
+        }
+        if (!evicted.isEmpty()) {
+            modifications++;
+        }
+        return evicted;
+    }
+
+    /**
+     * @return how much longer the entry is fresh, 0 if it is stale, or -1 if it
+     *         is absent or fresh entries aren't served
+     */
+    synchronized long getFreshMillis(final Key key) {
+        final Entry entry = entries.get(key);
+
+        if (!enabled || entry == null) {
+            return -1;
+        }
+        return Math.max(0, ttlMillis - (System.currentTimeMillis() - entry.fetchedAt));
+    }
+
+    synchronized long getTtlMillis() {
+        return enabled ? ttlMillis : 0;
+    }
+
+    synchronized long getModifications() {
+        return modifications;
+    }
+
+    /**
+     * Writes the entries that can still be served, least recently used first,
+     * with their values as encrypted as they are in memory.
+     *
+     * @return how many entries were written
+     */
+    synchronized int writeTo(final DataOutput out) throws IOException {
+        final long now = System.currentTimeMillis();
+        final List<Map.Entry<Key, Entry>> servable = new ArrayList<>(entries.size());
+
+        for (final Map.Entry<Key, Entry> entry : entries.entrySet()) {
+            if (isServable(now - entry.getValue().fetchedAt)) {
+                servable.add(entry);
+            }
+        }
+        out.writeInt(servable.size());
+        for (final Map.Entry<Key, Entry> entry : servable) {
+            entry.getKey().writeTo(out);
+            entry.getValue().writeTo(out);
+        }
+        return servable.size();
+    }
+
+    /**
+     * Reads entries that {@link #writeTo(DataOutput)} wrote and caches those
+     * that can still be served and aren't cached already, so the time they
+     * were fetched, and the time to live, carry over.
+     *
+     * @return how many entries were cached
+     */
+    int readFrom(final DataInput in) throws IOException {
+        final int count = readCount(in);
+        final List<Key> keys = new ArrayList<>();
+        final List<Entry> read = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            keys.add(Key.readFrom(in));
+            read.add(Entry.readFrom(in));
+        }
+        synchronized (this) {
+            final long now = System.currentTimeMillis();
+            int restored = 0;
+
+            for (int i = 0; i < count; i++) {
+                if (isServable(now - read.get(i).fetchedAt) && entries.putIfAbsent(keys.get(i), read.get(i)) == null) {
+                    restored++;
+                }
+            }
+            modifications++;
+            return restored;
+        }
+    }
+
+    private boolean isServable(final long age) {
+        return (enabled && age <= ttlMillis) || (serveStale && age <= maxStaleMillis);
+    }
+
+    /**
+     * @return a length or count, or -1 for {@code null}
+     * @throws IOException if it can't be right, so that a corrupt file doesn't
+     *                     allocate a huge array
+     */
+    private static int readLength(final DataInput in) throws IOException {
+        final int length = in.readInt();
+
+        if (length < -1 || length > MAX_LENGTH) {
+            throw new IOException("Invalid length " + length);
+        }
+        return length;
+    }
+
+    /**
+     * @return a count of something that is never {@code null}
+     * @throws IOException if it can't be right, including -1
+     */
+    private static int readCount(final DataInput in) throws IOException {
+        final int count = in.readInt();
+
+        if (count < 0 || count > MAX_LENGTH) {
+            throw new IOException("Invalid count " + count);
+        }
+        return count;
+    }
+
+    private static void writeString(final DataOutput out, @CheckForNull final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @CheckForNull
+    private static String readString(final DataInput in) throws IOException {
+        final int length = readLength(in);
+
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A secret found in the cache.
+     */
+    public static final class Hit {
+        private final SecretData secret;
+        private final long ageMillis;
+        private final boolean fresh;
+
+        Hit(final SecretData secret, final long ageMillis, final boolean fresh) {
+            this.secret = secret;
+            this.ageMillis = ageMillis;
+            this.fresh = fresh;
+        }
+
+        public SecretData getSecret() {
+            return secret;
+        }
+
+        /**
+         * @return how long ago the secret was fetched
+         */
+        public long getAgeMillis() {
+            return ageMillis;
+        }
+
+        /**
+         * @return {@code false} if the secret is past its time to live and should
+         *         be revalidated
+         */
+        public boolean isFresh() {
+            return fresh;
+        }
+    }
+
+    /**
+     * Identifies a cached secret, or the subset of its fields that was fetched.
+     */
+    public static final class Key {
+        private final String apiRootUrl, credentialIdentity;
+        private final int secretId;
+        // in lower case and sorted, or null for the whole secret
+        private final List<String> fields;
+
+        /**
+         * Identifies the whole secret.
+         */
+        public Key(final String apiRootUrl, final int secretId, final String credentialIdentity) {
+            this(apiRootUrl, secretId, credentialIdentity, null);
+        }
+
+        /**
+         * Identifies these fields of the secret.
+         *
+         * @param credentialIdentity see
+         *                           {@link SecretServerClient#getCredentialIdentity()}
+         * @param fields             the names or slugs of the fields, or
+         *                           {@code null} for the whole secret
+         */
+        public Key(final String apiRootUrl, final int secretId, final String credentialIdentity,
+                @CheckForNull final Collection<String> fields) {
+            this.apiRootUrl = apiRootUrl;
+            this.secretId = secretId;
+            this.credentialIdentity = credentialIdentity;
+            this.fields = fields == null ? null : normalize(fields);
+        }
+
+        /**
+         * @return the names or slugs of the fields in lower case, without
+         *         duplicates and sorted
+         */
+        static List<String> normalize(final Collection<String> fields) {
+            return Collections.unmodifiableList(fields.stream().map(field -> field.toLowerCase(Locale.ENGLISH))
+                    .distinct().sorted().collect(Collectors.toList()));
+        }
+
+        public String getApiRootUrl() {
+            return apiRootUrl;
+        }
+
+        public int getSecretId() {
+            return secretId;
+        }
+
+        public String getCredentialIdentity() {
+            return credentialIdentity;
+        }
+
+        /**
+         * @return the names or slugs of the fields, in lower case, or
+         *         {@code null} for the whole secret
+         */
+        @CheckForNull
+        public List<String> getFields() {
+            return fields;
+        }
+
+        /**
+         * @return the key of the whole secret
+         */
+        public Key withoutFields() {
+            return fields == null ? this : new Key(apiRootUrl, secretId, credentialIdentity);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return secretId == other.secretId && Objects.equals(apiRootUrl, other.apiRootUrl)
+                    && Objects.equals(credentialIdentity, other.credentialIdentity)
+                    && Objects.equals(fields, other.fields);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(apiRootUrl, secretId, credentialIdentity, fields);
+        }
+
+        @Override
+        public String toString() {
+            return apiRootUrl + "#" + secretId + (fields == null ? "" : fields.toString()) + "@"
+                    + credentialIdentity;
+        }
+
+        void writeTo(final DataOutput out) throws IOException {
+            writeString(out, apiRootUrl);
+            out.writeInt(secretId);
+            writeString(out, credentialIdentity);
+            out.writeInt(fields == null ? -1 : fields.size());
+            if (fields != null) {
+                for (final String field : fields) {
+                    writeString(out, field);
+                }
+            }
+        }
+
+        static Key readFrom(final DataInput in) throws IOException {
+            final String apiRootUrl = readString(in);
+            final int secretId = in.readInt();
+            final String credentialIdentity = readString(in);
+            final int count = readLength(in);
+            List<String> fields = null;
+
+            if (count >= 0) {
+                fields = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    fields.add(readString(in));
+                }
+            }
+            return new Key(apiRootUrl, secretId, credentialIdentity, fields);
+        }
+    }
+
+    private static final class Entry {
+        private final int id;
+        private final String name;
+        private final long fetchedAt;
+        private final String[] fieldNames, slugs, encryptedValues;
+        private final boolean[] files;
+
+        private Entry(final int id, final String name, final long fetchedAt, final String[] fieldNames,
+                final String[] slugs, final String[] encryptedValues, final boolean[] files) {
+            this.id = id;
+            this.name = name;
+            this.fetchedAt = fetchedAt;
+            this.fieldNames = fieldNames;
+            this.slugs = slugs;
+            this.encryptedValues = encryptedValues;
+            this.files = files;
+        }
+
+        Entry(final SecretData secret, final long fetchedAt) {
+            final List<SecretData.Field> fields = secret.getFields();
+
+            this.id = secret.getId();
+            this.name = secret.getName();
+            this.fetchedAt = fetchedAt;
+            this.fieldNames = new String[fields.size()];
+            this.slugs = new String[fields.size()];
+            this.encryptedValues = new String[fields.size()];
+            this.files = new boolean[fields.size()];
+            for (int i = 0; i < fields.size(); i++) {
+                final SecretData.Field field = fields.get(i);
+
+                fieldNames[i] = field.getFieldName();
+                slugs[i] = field.getSlug();
+                encryptedValues[i] = field.getValue() == null ? null
+                        : Secret.fromString(field.getValue()).getEncryptedValue();
+                files[i] = field.isFile();
+            }
+        }
+
+        SecretData decrypt() {
+            final List<SecretData.Field> fields = new ArrayList<>(fieldNames.length);
+
+            for (int i = 0; i < fieldNames.length; i++) {
+                final Secret value = encryptedValues[i] == null ? null : Secret.decrypt(encryptedValues[i]);
+
+                fields.add(new SecretData.Field(fieldNames[i], slugs[i], value == null ? null : value.getPlainText(),
+                        files[i]));
+            }
+            return new SecretData(id, name, fields);
+        }
+
+        void writeTo(final DataOutput out) throws IOException {
+            out.writeInt(id);
+            writeString(out, name);
+            out.writeLong(fetchedAt);
+            out.writeInt(fieldNames.length);
+            for (int i = 0; i < fieldNames.length; i++) {
+                writeString(out, fieldNames[i]);
+                writeString(out, slugs[i]);
+                writeString(out, encryptedValues[i]);
+                out.writeBoolean(files[i]);
+            }
+        }
+
+        static Entry readFrom(final DataInput in) throws IOException {
+            final int id = in.readInt();
+            final String name = readString(in);
+            final long fetchedAt = in.readLong();
+            final int count = readCount(in);
+            final String[] fieldNames = new String[count], slugs = new String[count];
+            final String[] encryptedValues = new String[count];
+            final boolean[] files = new boolean[count];
+
+            for (int i = 0; i < count; i++) {
+                fieldNames[i] = readString(in);
+                slugs[i] = readString(in);
+                encryptedValues[i] = readString(in);
+                files[i] = in.readBoolean();
+            }
+            return new Entry(id, name, fetchedAt, fieldNames, slugs, encryptedValues, files);
+        }
+    }
+}
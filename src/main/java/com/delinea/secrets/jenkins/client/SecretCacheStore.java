@@ -0,0 +1,181 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.CheckForNull;
+
+import hudson.Extension;
+import hudson.init.Terminator;
+import hudson.model.PeriodicWork;
+import hudson.util.Secret;
+import jenkins.model.Jenkins;
+
+/**
+ * Keeps the {@link SecretCache} in a file under {@code JENKINS_HOME}, so that
+ * it survives a restart of the controller and the builds queued across it
+ * don't all fetch their secrets from Secret Server at once.
+ * <p>
+ * The file is binary: a header, then each entry with its key, when it was
+ * fetched and its fields. Field values stay encrypted with the Jenkins
+ * confidential key, as {@link Secret}s are, exactly as they are held in
+ * memory. The file is read the first time the cache is looked up, and only the
+ * entries that are still within the time to live, or the maximum stale age,
+ * are cached. It is written, if the cache changed, every minute and when
+ * Jenkins shuts down, and deleted when persistence is disabled.
+ */
+public final class SecretCacheStore {
+    private static final Logger LOGGER = Logger.getLogger(SecretCacheStore.class.getName());
+
+    private static final String FILE_NAME = "secret-server-cache.bin";
+    private static final int MAGIC = 0x54535343;
+    private static final int FORMAT_VERSION = 1;
+
+    private static volatile boolean enabled, loaded;
+    // the modifications of the cache when it was last read or written
+    private static long savedModifications = -1;
+
+    private SecretCacheStore() {
+    }
+
+    /**
+     * Applies the global configuration.
+     *
+     * @param enabled whether the cache is kept on disk; if not, the file is
+     *                deleted
+     */
+    public static synchronized void configure(final boolean enabled) {
+        SecretCacheStore.enabled = enabled;
+        if (!enabled) {
+            loaded = false;
+            savedModifications = -1;
+            delete();
+        }
+    }
+
+    /**
+     * Reads the file into the cache, the first time it is called while
+     * persistence is enabled.
+     */
+    static void loadOnce() {
+        if (enabled && !loaded) {
+            load();
+        }
+    }
+
+    private static synchronized void load() {
+        if (!enabled || loaded) {
+            return;
+        }
+        loaded = true;
+        final Path path = path();
+
+        if (path == null || !Files.isRegularFile(path)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                LOGGER.log(Level.WARNING, "Ignoring {0}, which isn't a secret cache this version can read", path);
+                return;
+            }
+            final int restored = SecretCache.get().readFrom(in);
+
+            LOGGER.log(Level.FINE, "Restored {0} cached secrets from {1}", new Object[] { restored, path });
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to read the secret cache from " + path + "; starting empty", e);
+        }
+    }
+
+    /**
+     * Writes the cache to the file, if persistence is enabled and the cache
+     * changed since it was last read or written.
+     */
+    public static synchronized void save() {
+        if (!enabled) {
+            return;
+        }
+        // merge what is on disk first, so that it isn't lost if nothing was looked up yet
+        load();
+        final SecretCache cache = SecretCache.get();
+        final long modifications = cache.getModifications();
+        final Path path = path();
+
+        if (path == null || modifications == savedModifications) {
+            return;
+        }
+        try {
+            final Path temp = Files.createTempFile(path.getParent(), FILE_NAME, ".tmp");
+            final int written;
+
+            try {
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    written = cache.writeTo(out);
+                }
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            savedModifications = modifications;
+            LOGGER.log(Level.FINE, "Saved {0} cached secrets to {1}", new Object[] { written, path });
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save the secret cache to " + path, e);
+        }
+    }
+
+    private static void delete() {
+        final Path path = path();
+
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to delete the secret cache " + path, e);
+        }
+    }
+
+    @CheckForNull
+    private static Path path() {
+        final Jenkins jenkins = Jenkins.getInstanceOrNull();
+
+        return jenkins == null ? null : new File(jenkins.getRootDir(), FILE_NAME).toPath();
+    }
+
+    /**
+     * Saves the cache when Jenkins shuts down.
+     */
+    @Terminator
+    public static void saveOnShutdown() {
+        save();
+    }
+
+    /**
+     * Saves the cache every minute, if it changed.
+     */
+    @Extension
+    public static final class PeriodicSave extends PeriodicWork {
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.MINUTES.toMillis(1);
+        }
+
+        @Override
+        protected void doRun() {
+            save();
+        }
+    }
+}
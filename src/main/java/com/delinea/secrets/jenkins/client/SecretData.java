@@ -0,0 +1,109 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * A Secret Server secret, as returned by {@code GET /api/v1/secrets/{id}}.
+ * It is only serialized to go between the controller and a build agent.
+ */
+public class SecretData implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int id;
+    private final String name;
+    private final List<Field> fields;
+
+    public SecretData(final int id, final String name, final List<Field> fields) {
+        this.id = id;
+        this.name = name;
+        this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    /**
+     * @param nameOrSlug the name or slug of the field
+     * @return the first field with that name or slug, ignoring case, or
+     *         {@code null} if there is none
+     */
+    public Field getField(final String nameOrSlug) {
+        for (final Field field : fields) {
+            if (field.matches(nameOrSlug)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    static SecretData fromJson(final JSONObject json) {
+        final List<Field> fields = new ArrayList<>();
+        final JSONArray items = json.optJSONArray("items");
+
+        if (items != null) {
+            for (int i = 0; i < items.size(); i++) {
+                final JSONObject item = items.getJSONObject(i);
+
+                fields.add(new Field(HttpSupport.optString(item, "fieldName"), HttpSupport.optString(item, "slug"),
+                        HttpSupport.optString(item, "itemValue"), item.optBoolean("isFile")));
+            }
+        }
+        return new SecretData(json.optInt("id"), HttpSupport.optString(json, "name"), fields);
+    }
+
+    /**
+     * A field (an "item" in Secret Server terms) of a secret.
+     */
+    public static class Field implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String fieldName, slug, value;
+        private final boolean file;
+
+        public Field(final String fieldName, final String slug, final String value, final boolean file) {
+            this.fieldName = fieldName;
+            this.slug = slug;
+            this.value = value;
+            this.file = file;
+        }
+
+        public String getFieldName() {
+            return fieldName;
+        }
+
+        public String getSlug() {
+            return slug;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public boolean isFile() {
+            return file;
+        }
+
+        /**
+         * @return whether the name or the slug of this field is
+         *         {@code nameOrSlug}, ignoring case
+         */
+        public boolean matches(final String nameOrSlug) {
+            return nameOrSlug.equalsIgnoreCase(fieldName) || nameOrSlug.equalsIgnoreCase(slug);
+        }
+    }
+}
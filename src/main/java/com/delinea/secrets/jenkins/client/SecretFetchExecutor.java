@@ -0,0 +1,173 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+/**
+ * An elastic, controller-wide pool for fetching secrets concurrently, with a
+ * limit per caller rather than for the whole controller: each build fetches
+ * up to its own number of secrets at a time, however many other builds are
+ * fetching theirs.
+ * <p>
+ * The pool grows with demand up to {@link #MAX_POOL_THREADS} and shrinks when
+ * idle; past that, callers run their tasks on their own threads, so fetching
+ * is never slower than it is serially. Tasks that are no longer needed are
+ * cancelled without being interrupted, since the fetch they are running may be
+ * shared with other builds.
+ */
+public final class SecretFetchExecutor {
+    public static final int DEFAULT_THREADS = 4;
+
+    private static final int MAX_POOL_THREADS = 200;
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(0, MAX_POOL_THREADS, 60L,
+            TimeUnit.SECONDS, new SynchronousQueue<>(),
+            new NamingThreadFactory(new DaemonThreadFactory(), "SecretServer.fetch"),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+
+    private SecretFetchExecutor() {
+    }
+
+    /**
+     * Runs the tasks, at most {@code threads} at a time, and returns their
+     * results in the order of the tasks. The first task to fail cancels the
+     * others and its failure is rethrown.
+     *
+     * @param tasks   the tasks
+     * @param threads how many of them run at a time
+     * @return the results, in task order
+     * @throws IOException          if a task threw an {@link IOException}
+     * @throws InterruptedException if the caller was interrupted while waiting
+     */
+    public static <T> List<T> invokeAll(final List<? extends Callable<T>> tasks, final int threads)
+            throws IOException, InterruptedException {
+        final List<T> results = new ArrayList<>(tasks.size());
+
+        if (tasks.size() == 1) {
+            // not worth a thread hand-off
+            results.add(call(tasks.get(0)));
+            return results;
+        }
+        final CompletionService<T> completionService = completionService(threads);
+        final List<Future<T>> futures = new ArrayList<>(tasks.size());
+
+        try {
+            for (final Callable<T> task : tasks) {
+                futures.add(completionService.submit(task));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                // fail as soon as any task fails, rather than in task order
+                completionService.take().get();
+            }
+            for (final Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (final ExecutionException e) {
+            throw rethrow(e.getCause());
+        } finally {
+            cancel(futures);
+        }
+    }
+
+    /**
+     * @return a completion service that runs tasks, at most {@code threads} at
+     *         a time, for callers that submit more tasks as others complete;
+     *         they must {@link #cancel(List)} the tasks they no longer need
+     */
+    static <T> CompletionService<T> completionService(final int threads) {
+        return new ExecutorCompletionService<>(new BoundedExecutor(threads));
+    }
+
+    /**
+     * Cancels the tasks that haven't started and lets those that have finish,
+     * rather than interrupt a fetch that other callers may be waiting for.
+     */
+    static void cancel(final List<? extends Future<?>> futures) {
+        futures.forEach(future -> future.cancel(false));
+    }
+
+    private static <T> T call(final Callable<T> task) throws IOException, InterruptedException {
+        try {
+            return task.call();
+        } catch (final IOException | InterruptedException | RuntimeException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    static IOException rethrow(final Throwable cause) {
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+
+    /**
+     * Runs tasks on the pool, at most a given number at a time, and queues the
+     * rest.
+     */
+    private static final class BoundedExecutor implements Executor {
+        private final int limit;
+        private final Queue<Runnable> queue = new ArrayDeque<>();
+        private int running;
+
+        BoundedExecutor(final int limit) {
+            this.limit = Math.max(1, limit);
+        }
+
+        @Override
+        public void execute(final Runnable task) {
+            synchronized (this) {
+                queue.add(task);
+            }
+            drain();
+        }
+
+        private void drain() {
+            while (true) {
+                final Runnable next;
+
+                synchronized (this) {
+                    if (running >= limit || queue.isEmpty()) {
+                        return;
+                    }
+                    next = queue.poll();
+                    running++;
+                }
+                // not under the lock: when the pool is full, the task runs right here
+                EXECUTOR.execute(() -> {
+                    try {
+                        next.run();
+                    } finally {
+                        synchronized (this) {
+                            running--;
+                        }
+                        drain();
+                    }
+                });
+            }
+        }
+    }
+}
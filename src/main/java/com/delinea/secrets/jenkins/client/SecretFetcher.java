@@ -0,0 +1,306 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * The path every secret fetch takes: it consults the {@link SecretCache}
+ * before calling Secret Server through the {@link SecretServerClient}.
+ * <p>
+ * A fresh cached secret is returned as-is. A stale one, which the cache only
+ * keeps when serving stale secrets is enabled, is returned immediately while
+ * it is revalidated in the background. If revalidation fails the stale
+ * secret keeps being served, with a warning, until it reaches the maximum
+ * stale age, unless Secret Server answered that the secret is gone or that
+ * the credential may no longer read it, in which case it is evicted.
+ * <p>
+ * Concurrent fetches of the same secret with the same credential share one
+ * call to Secret Server.
+ * <p>
+ * When only a few fields of a secret are needed, and that is enabled, only
+ * those fields are fetched, with a request each. If one of them can't be
+ * found by its slug, the whole secret is fetched instead.
+ */
+public final class SecretFetcher {
+    private static final Logger LOGGER = Logger.getLogger(SecretFetcher.class.getName());
+
+    private static final SingleFlight<SecretCache.Key, SecretData> IN_FLIGHT = new SingleFlight<>();
+    private static final Set<SecretCache.Key> REVALIDATING = ConcurrentHashMap.newKeySet();
+    // when each unreachable server (by API root URL) was first found to be unreachable
+    private static final Map<String, Long> OUTAGES = new ConcurrentHashMap<>();
+    private static final int FORBIDDEN = 403, NOT_FOUND = 404, SERVER_ERROR = 500;
+
+    public static final int DEFAULT_MAX_PROJECTED_FIELDS = 3;
+
+    private static volatile int maxProjectedFields;
+
+    private SecretFetcher() {
+    }
+
+    /**
+     * Applies the global configuration.
+     *
+     * @param maxProjectedFields fetch only the fields that are needed when there
+     *                           are at most this many of them; 0 to always fetch
+     *                           whole secrets
+     */
+    public static void configure(final int maxProjectedFields) {
+        SecretFetcher.maxProjectedFields = Math.max(0, maxProjectedFields);
+    }
+
+    /**
+     * Returns the secret from the cache, if it has it, otherwise fetches it and
+     * caches it.
+     *
+     * @param client the client for the server and credential
+     * @param id     the id of the secret
+     * @return the secret
+     * @throws IOException if the secret could not be fetched
+     */
+    public static SecretData fetch(@Nonnull final SecretServerClient client, final int id) throws IOException {
+        return fetch(client, id, new FetchTiming());
+    }
+
+    /**
+     * Returns the secret from the cache, if it has it, otherwise fetches it and
+     * caches it, recording where it came from and how long that took in
+     * {@code timing}.
+     *
+     * @param client the client for the server and credential
+     * @param id     the id of the secret
+     * @param timing where to record the source and the time spent
+     * @return the secret
+     * @throws IOException if the secret could not be fetched
+     */
+    public static SecretData fetch(@Nonnull final SecretServerClient client, final int id,
+            @Nonnull final FetchTiming timing) throws IOException {
+        return fetch(client, id, null, timing);
+    }
+
+    /**
+     * Returns the secret, or at least these fields of it, from the cache, if it
+     * has it, otherwise fetches it and caches it, recording where it came from
+     * and how long that took in {@code timing}.
+     *
+     * @param client the client for the server and credential
+     * @param id     the id of the secret
+     * @param fields the names or slugs of the fields that are needed, or
+     *               {@code null} if all of them are
+     * @param timing where to record the source and the time spent
+     * @return the secret, which may have only the fields that are needed
+     * @throws IOException if the secret could not be fetched
+     */
+    public static SecretData fetch(@Nonnull final SecretServerClient client, final int id,
+            @CheckForNull final Collection<String> fields, @Nonnull final FetchTiming timing) throws IOException {
+        final long start = System.nanoTime();
+
+        try {
+            final SecretCache.Key key = key(client, id, fields);
+
+            SecretPreRefresher.record(client, key);
+            SecretCache.Hit hit = SecretCache.get().lookup(key);
+
+            if (hit == null && key.getFields() != null) {
+                // the whole secret will do as well, if it's fresh
+                final SecretCache.Hit whole = SecretCache.get().lookup(key.withoutFields());
+
+                hit = whole != null && whole.isFresh() ? whole : null;
+            }
+
+            if (hit != null) {
+                if (hit.isFresh()) {
+                    SecretServerMetrics.CACHE_HITS.inc();
+                    timing.setSource(FetchTiming.Source.CACHE);
+                } else {
+                    SecretServerMetrics.CACHE_STALE_HITS.inc();
+                    timing.setSource(FetchTiming.Source.STALE_CACHE);
+                    revalidate(client, key, hit.getAgeMillis());
+                }
+                return hit.getSecret();
+            }
+            SecretServerMetrics.CACHE_MISSES.inc();
+            return load(client, key, timing);
+        } finally {
+            timing.setTotalNanos(System.nanoTime() - start);
+        }
+    }
+
+    private static SecretCache.Key key(final SecretServerClient client, final int id,
+            final Collection<String> fields) {
+        return new SecretCache.Key(client.getApiRootUrl(), id, client.getCredentialIdentity(), projection(fields));
+    }
+
+    /**
+     * @return the fields to fetch, in lower case, or {@code null} to fetch the
+     *         whole secret, because they are all needed, or too many of them,
+     *         or projection is disabled
+     */
+    @CheckForNull
+    static List<String> projection(@CheckForNull final Collection<String> fields) {
+        final int max = maxProjectedFields;
+
+        if (fields == null || fields.isEmpty() || max <= 0) {
+            return null;
+        }
+        final List<String> projection = SecretCache.Key.normalize(fields);
+
+        return projection.size() <= max ? projection : null;
+    }
+
+    private static SecretData load(final SecretServerClient client, final SecretCache.Key key,
+            final FetchTiming timing) throws IOException {
+        final SecretData secret = IN_FLIGHT.run(key, () -> get(client, key, timing));
+
+        if (timing.getSource() == null) {
+            // another thread fetched it
+            timing.setSource(FetchTiming.Source.SHARED);
+        }
+        return secret;
+    }
+
+    private static SecretData get(final SecretServerClient client, final SecretCache.Key key,
+            final FetchTiming timing) throws IOException {
+        final SecretData secret;
+        final long sequence = SecretInvalidation.current();
+
+        timing.setSource(FetchTiming.Source.NETWORK);
+        try {
+            secret = key.getFields() == null ? client.getSecret(key.getSecretId(), timing)
+                    : getFields(client, key.getSecretId(), key.getFields(), timing);
+        } catch (final IOException e) {
+            if (isOutage(e)) {
+                OUTAGES.putIfAbsent(key.getApiRootUrl(), System.currentTimeMillis());
+            } else if (!SingleFlight.isAbort(e)) {
+                reachable(key.getApiRootUrl());
+            }
+            if (isRevoked(e)) {
+                // so that it isn't served anymore, fresh or stale, to a credential that can't read it
+                SecretCache.get().remove(key);
+                SecretCache.get().remove(key.withoutFields());
+            }
+            throw e;
+        }
+        reachable(key.getApiRootUrl());
+        // a secret that changed while it was being fetched may be the old one, so it isn't cached
+        SecretCache.get().put(key, secret, sequence);
+        return secret;
+    }
+
+    private static void reachable(final String apiRootUrl) {
+        if (OUTAGES.remove(apiRootUrl) != null) {
+            LOGGER.log(Level.INFO, "Secret Server {0} is reachable again", apiRootUrl);
+        }
+    }
+
+    /**
+     * @return whether the failure means that Secret Server couldn't be reached
+     *         or didn't work, rather than that it answered with an error
+     */
+    static boolean isOutage(final IOException e) {
+        final int status = status(e);
+
+        return status == 0 ? !SingleFlight.isAbort(e) : status >= SERVER_ERROR;
+    }
+
+    /**
+     * @return whether Secret Server answered that the secret doesn't exist or
+     *         that the credential may not read it
+     */
+    static boolean isRevoked(final IOException e) {
+        final int status = status(e);
+
+        return status == FORBIDDEN || status == NOT_FOUND;
+    }
+
+    /**
+     * @return the HTTP status Secret Server answered with, or 0 if it didn't,
+     *         looking through the failures a {@link SingleFlight} shared
+     */
+    private static int status(final Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpSupport.HttpStatusException) {
+                return ((HttpSupport.HttpStatusException) cause).getStatus();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Fetches the secret, or its fields, from Secret Server and caches it,
+     * whether it is cached already or not.
+     */
+    static SecretData refresh(final SecretServerClient client, final SecretCache.Key key) throws IOException {
+        return load(client, key, new FetchTiming());
+    }
+
+    /**
+     * Fetches these fields of the secret, or the whole secret if one of them
+     * can't be found by its slug.
+     */
+    static SecretData getFields(final SecretServerClient client, final int id, final List<String> fields,
+            final FetchTiming timing) throws IOException {
+        try {
+            return client.getSecretFields(id, fields, timing);
+        } catch (final HttpSupport.HttpStatusException e) {
+            if (e.getStatus() != NOT_FOUND) {
+                throw e;
+            }
+            // a field is known by a name that isn't its slug, so it has to be looked up in the whole secret
+            LOGGER.log(Level.FINE, "Fetching all of secret {0} because a field was not found by its slug: {1}",
+                    new Object[] { id, e.getMessage() });
+            return client.getSecret(id, timing);
+        }
+    }
+
+    private static void revalidate(final SecretServerClient client, final SecretCache.Key key, final long ageMillis) {
+        if (!REVALIDATING.add(key)) {
+            return; // already being revalidated
+        }
+        final boolean submitted = SecretRefreshExecutor.submit(() -> {
+            try {
+                load(client, key, new FetchTiming());
+            } catch (final IOException e) {
+                if (isRevoked(e)) {
+                    LOGGER.log(Level.WARNING, String.format(
+                            "Evicted secret %d of Secret Server %s from the cache, since it can't be read anymore: %s",
+                            key.getSecretId(), key.getApiRootUrl(), e.getMessage()));
+                } else {
+                    warnServingStale(key, ageMillis, e);
+                }
+            } catch (final RuntimeException e) {
+                warnServingStale(key, ageMillis, e);
+            } finally {
+                REVALIDATING.remove(key);
+            }
+        });
+        if (!submitted) {
+            REVALIDATING.remove(key);
+        }
+    }
+
+    private static void warnServingStale(final SecretCache.Key key, final long ageMillis, final Exception e) {
+        final Long since = OUTAGES.get(key.getApiRootUrl());
+
+        if (since == null) {
+            LOGGER.log(Level.WARNING, String.format(
+                    "Revalidating secret %d of Secret Server %s failed; serving it from the cache, fetched %ds ago: %s",
+                    key.getSecretId(), key.getApiRootUrl(), TimeUnit.MILLISECONDS.toSeconds(ageMillis),
+                    e.getMessage()));
+            return;
+        }
+        LOGGER.log(Level.WARNING, String.format(
+                "Secret Server %s has been unreachable for %ds; serving secret %d from the cache, fetched %ds ago: %s",
+                key.getApiRootUrl(), TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - since),
+                key.getSecretId(), TimeUnit.MILLISECONDS.toSeconds(ageMillis), e.getMessage()));
+    }
+}
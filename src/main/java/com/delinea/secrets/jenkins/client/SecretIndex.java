@@ -0,0 +1,258 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * A controller-wide index from secret paths, e.g.
+ * {@code \Jenkins\Production\Database}, to secret ids, so that secrets can be
+ * referred to by folder path and name and resolving one costs a map lookup in
+ * steady state.
+ * <p>
+ * It is filled on demand: the first lookup in a folder lists the whole folder,
+ * so its other secrets resolve without a request. It is refreshed
+ * incrementally: a name that isn't in the index, or whose entry is past its
+ * time to live, is searched for on its own and only its entry is replaced.
+ * Entries, and the ids of folders, are evicted once they are past their time
+ * to live, which is also when a folder is listed again. A name without a
+ * folder is searched for in all folders and must be unique.
+ */
+public final class SecretIndex {
+    public static final int DEFAULT_TTL_SECONDS = 600;
+
+    // beyond this, only entries that are looked up are added
+    private static final int MAX_ENTRIES = 10000;
+    private static final int SEARCH_PAGE_SIZE = 50;
+    private static final SecretIndex INSTANCE = new SecretIndex();
+
+    private volatile long ttlMillis = TimeUnit.SECONDS.toMillis(DEFAULT_TTL_SECONDS);
+    private final Map<Key, Entry> secrets = new ConcurrentHashMap<>();
+    private final Map<Key, Entry> folders = new ConcurrentHashMap<>();
+    private final SingleFlight<Key, Integer> secretsInFlight = new SingleFlight<>();
+    private final SingleFlight<Key, Entry> foldersInFlight = new SingleFlight<>();
+
+    private SecretIndex() {
+    }
+
+    public static SecretIndex get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Applies the global configuration.
+     *
+     * @param ttlSeconds how long the id of a secret or a folder is used before
+     *                   it is looked up again
+     */
+    public void configure(final int ttlSeconds) {
+        ttlMillis = TimeUnit.SECONDS.toMillis(Math.max(0, ttlSeconds));
+    }
+
+    /**
+     * @param client    the client for the server and credential
+     * @param reference the id of a secret, or its name, with the path of its
+     *                  folder separated by {@code \} or {@code /}
+     * @return the id of the secret
+     * @throws IOException if Secret Server could not be reached or refused the
+     *                     request, or there is no such secret, or more than one
+     */
+    public int resolve(@Nonnull final SecretServerClient client, @Nonnull final String reference)
+            throws IOException {
+        final String trimmed = reference.trim();
+
+        if (!trimmed.isEmpty() && StringUtils.isNumeric(trimmed)) {
+            return Integer.parseInt(trimmed);
+        }
+        final List<String> segments = HttpSecretServerClient.pathSegments(trimmed);
+
+        if (segments.isEmpty()) {
+            throw new IOException("Invalid secret path " + reference);
+        }
+        final Key key = new Key(client.getApiRootUrl(), client.getCredentialIdentity(),
+                String.join("\\", segments.subList(0, segments.size() - 1)), segments.get(segments.size() - 1));
+        final Entry entry = fresh(secrets, key);
+
+        if (entry != null) {
+            return entry.id;
+        }
+        return secretsInFlight.run(key, () -> lookUp(client, key, reference));
+    }
+
+    public int size() {
+        return secrets.size();
+    }
+
+    /**
+     * Forgets the paths of the secret, e.g. because it was renamed or moved.
+     */
+    public void invalidate(final int secretId) {
+        secrets.values().removeIf(entry -> entry.id == secretId);
+    }
+
+    private int lookUp(final SecretServerClient client, final Key key, final String reference) throws IOException {
+        Integer folderId = null;
+
+        if (!key.folder.isEmpty()) {
+            final Key folderKey = key.folder();
+            final Entry folder = fresh(folders, folderKey);
+
+            if (folder == null) {
+                // a folder that is new, or old enough, is listed whole
+                folderId = foldersInFlight.run(folderKey, () -> loadFolder(client, folderKey)).id;
+
+                final Entry entry = fresh(secrets, key);
+
+                if (entry != null) {
+                    return entry.id;
+                }
+            } else {
+                folderId = folder.id;
+            }
+        }
+        return search(client, key, folderId, reference);
+    }
+
+    private Entry loadFolder(final SecretServerClient client, final Key folderKey) throws IOException {
+        final Entry folder = new Entry(client.getFolderId(folderKey.folder));
+        final FetchTiming timing = new FetchTiming();
+
+        for (int skip = 0, total = 1; skip < total; skip += FolderFetcher.PAGE_SIZE) {
+            final SecretPage page = client.searchSecrets(folder.id, null, skip, FolderFetcher.PAGE_SIZE, timing);
+
+            if (page.getSecrets().isEmpty()) {
+                break;
+            }
+            page.getSecrets().forEach(secret -> put(folderKey.secret(secret.getName()), secret.getId()));
+            total = page.getTotal();
+        }
+        folders.put(folderKey, folder);
+        return folder;
+    }
+
+    private int search(final SecretServerClient client, final Key key, @CheckForNull final Integer folderId,
+            final String reference) throws IOException {
+        final FetchTiming timing = new FetchTiming();
+        Integer id = null;
+
+        // every page, since the one that is named exactly that can come after many that only contain the name
+        for (int skip = 0, total = 1; skip < total; skip += SEARCH_PAGE_SIZE) {
+            final SecretPage page = client.searchSecrets(folderId, key.name, skip, SEARCH_PAGE_SIZE, timing);
+
+            if (page.getSecrets().isEmpty()) {
+                break;
+            }
+            for (final SecretPage.Summary secret : page.getSecrets()) {
+                if (key.name.equalsIgnoreCase(StringUtils.trim(secret.getName()))) {
+                    if (id != null) {
+                        throw new IOException("More than one secret is named " + reference);
+                    }
+                    id = secret.getId();
+                } else if (folderId != null) {
+                    // it's in the folder too, so it might as well be indexed
+                    put(key.secret(secret.getName()), secret.getId());
+                }
+            }
+            total = page.getTotal();
+        }
+        if (id == null) {
+            throw new IOException("Secret " + reference + " not found");
+        }
+        secrets.put(key, new Entry(id));
+        return id;
+    }
+
+    private void put(final Key key, final int id) {
+        if (secrets.size() >= MAX_ENTRIES) {
+            evictExpired();
+            if (secrets.size() >= MAX_ENTRIES) {
+                return;
+            }
+        }
+        secrets.put(key, new Entry(id));
+    }
+
+    @CheckForNull
+    private Entry fresh(final Map<Key, Entry> entries, final Key key) {
+        final Entry entry = entries.get(key);
+
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.createdAt > ttlMillis) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    private void evictExpired() {
+        final long oldest = System.currentTimeMillis() - ttlMillis;
+
+        secrets.values().removeIf(entry -> entry.createdAt < oldest);
+        folders.values().removeIf(entry -> entry.createdAt < oldest);
+    }
+
+    /**
+     * Identifies a secret, or a folder, by its path, in lower case, on a
+     * server as seen by the account of a credential.
+     */
+    private static final class Key {
+        private final String apiRootUrl, credentialIdentity, folder;
+        // null for a folder
+        private final String name;
+
+        Key(final String apiRootUrl, final String credentialIdentity, final String folder, final String name) {
+            this.apiRootUrl = apiRootUrl;
+            this.credentialIdentity = credentialIdentity;
+            this.folder = folder;
+            this.name = name;
+        }
+
+        Key folder() {
+            return new Key(apiRootUrl, credentialIdentity, folder, null);
+        }
+
+        Key secret(final String name) {
+            return new Key(apiRootUrl, credentialIdentity, folder,
+                    StringUtils.trimToEmpty(name).toLowerCase(Locale.ENGLISH));
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return Objects.equals(apiRootUrl, other.apiRootUrl)
+                    && Objects.equals(credentialIdentity, other.credentialIdentity)
+                    && folder.equals(other.folder) && Objects.equals(name, other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(apiRootUrl, credentialIdentity, folder, name);
+        }
+    }
+
+    private static final class Entry {
+        private final int id;
+        private final long createdAt = System.currentTimeMillis();
+
+        Entry(final int id) {
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Drops what the plugin holds of secrets that changed in Secret Server, e.g.
+ * because their password was rotated, so that long times to live don't mean
+ * serving old values.
+ * <p>
+ * Invalidating a secret evicts all its entries from the {@link SecretCache},
+ * whole and projected, and from the {@link SecretIndex}, and saves the cache
+ * if it is kept on disk. Each invalidation also takes a number from a
+ * sequence, which holders of secrets compare with the number they fetched
+ * them at: fetches that were in flight don't cache what they get, and Secret
+ * Server credentials fetch their username and password again.
+ */
+public final class SecretInvalidation {
+    private static final Logger LOGGER = Logger.getLogger(SecretInvalidation.class.getName());
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    // the sequence number of the last invalidation of each secret, by id
+    private static final Map<Integer, Long> INVALIDATED = new ConcurrentHashMap<>();
+
+    private SecretInvalidation() {
+    }
+
+    /**
+     * @return the sequence number of the last invalidation, to compare with
+     *         {@link #isInvalidatedSince(int, long)} later
+     */
+    public static long current() {
+        return SEQUENCE.get();
+    }
+
+    /**
+     * @return whether the secret was invalidated after {@code sequence} was
+     *         {@link #current()}
+     */
+    public static boolean isInvalidatedSince(final int secretId, final long sequence) {
+        final Long invalidated = INVALIDATED.get(secretId);
+
+        return invalidated != null && invalidated > sequence;
+    }
+
+    /**
+     * Invalidates the secrets and, if asked to, fetches the cached ones again
+     * in the background, with the clients that are in use for them.
+     *
+     * @param secretIds the ids of the secrets
+     * @param refresh   whether to fetch them again rather than only evict them
+     * @return the result
+     */
+    @Nonnull
+    public static Result invalidate(@Nonnull final Collection<Integer> secretIds, final boolean refresh) {
+        int evicted = 0, refreshing = 0;
+
+        for (final int secretId : secretIds) {
+            // recorded before the eviction, which SecretCache.put(Key, SecretData, long) relies on
+            INVALIDATED.put(secretId, SEQUENCE.incrementAndGet());
+            SecretIndex.get().invalidate(secretId);
+
+            final List<SecretCache.Key> keys = SecretCache.get().invalidate(secretId);
+
+            evicted += keys.size();
+            if (!refresh) {
+                continue;
+            }
+            for (final SecretCache.Key key : keys) {
+                final SecretServerClient client = SecretServerClients.find(key.getApiRootUrl(),
+                        key.getCredentialIdentity());
+
+                if (client != null && SecretRefreshExecutor.submit(() -> {
+                    try {
+                        SecretFetcher.refresh(client, key);
+                    } catch (final IOException | RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Failed to refresh " + key + " after it changed", e);
+                    }
+                })) {
+                    refreshing++;
+                }
+            }
+        }
+        if (evicted > 0) {
+            // so that a restart doesn't bring the old values back
+            SecretCacheStore.save();
+        }
+        LOGGER.log(Level.FINE, "Invalidated secrets {0}: {1} cache entries evicted, {2} being refreshed",
+                new Object[] { secretIds, evicted, refreshing });
+        return new Result(evicted, refreshing);
+    }
+
+    /**
+     * What an invalidation did.
+     */
+    public static final class Result {
+        private final int evicted, refreshing;
+
+        Result(final int evicted, final int refreshing) {
+            this.evicted = evicted;
+            this.refreshing = refreshing;
+        }
+
+        /**
+         * @return how many cache entries were evicted
+         */
+        public int getEvicted() {
+            return evicted;
+        }
+
+        /**
+         * @return how many of those are being fetched again
+         */
+        public int getRefreshing() {
+            return refreshing;
+        }
+    }
+}
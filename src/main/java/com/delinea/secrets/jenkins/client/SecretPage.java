@@ -0,0 +1,76 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * A page of a secret search, as returned by {@code GET /api/v1/secrets}, with
+ * the id and name of each secret but none of their fields.
+ */
+public class SecretPage {
+    private final int skip, total;
+    private final List<Summary> secrets;
+
+    public SecretPage(final int skip, final int total, final List<Summary> secrets) {
+        this.skip = skip;
+        this.total = total;
+        this.secrets = Collections.unmodifiableList(new ArrayList<>(secrets));
+    }
+
+    /**
+     * @return the number of secrets before this page
+     */
+    public int getSkip() {
+        return skip;
+    }
+
+    /**
+     * @return the number of secrets on all the pages
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    public List<Summary> getSecrets() {
+        return secrets;
+    }
+
+    static SecretPage fromJson(final int skip, final JSONObject json) {
+        final List<Summary> secrets = new ArrayList<>();
+        final JSONArray records = json.optJSONArray("records");
+
+        if (records != null) {
+            for (int i = 0; i < records.size(); i++) {
+                final JSONObject record = records.getJSONObject(i);
+
+                secrets.add(new Summary(record.optInt("id"), HttpSupport.optString(record, "name")));
+            }
+        }
+        return new SecretPage(skip, json.optInt("total", skip + secrets.size()), secrets);
+    }
+
+    /**
+     * The id and name of a secret.
+     */
+    public static class Summary {
+        private final int id;
+        private final String name;
+
+        public Summary(final int id, final String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
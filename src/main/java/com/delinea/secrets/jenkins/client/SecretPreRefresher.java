@@ -0,0 +1,177 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import hudson.Extension;
+import hudson.model.PeriodicWork;
+
+/**
+ * Refreshes the cached secrets that are fetched the most before they expire,
+ * so that the builds and credentials that use them don't wait on Secret
+ * Server when their time to live runs out.
+ * <p>
+ * Every fetch through {@link SecretFetcher}, by builds and by Secret Server
+ * credentials alike, is counted per cache key. Every
+ * {@link #PERIOD_SECONDS} seconds the counts are decayed, keys that haven't
+ * been fetched for twice the time to live, or ten minutes if that is longer,
+ * are forgotten, and the hottest {@link #MAX_HOT_KEYS} keys that are cached
+ * but would expire before the next run but one are fetched again on the
+ * {@link SecretRefreshExecutor}, at most the configured number at a time; the
+ * keys over that wait for the next run. It only runs while the cache serves
+ * fresh secrets.
+ */
+public final class SecretPreRefresher {
+    private static final Logger LOGGER = Logger.getLogger(SecretPreRefresher.class.getName());
+
+    public static final int DEFAULT_THREADS = 2;
+
+    static final long PERIOD_SECONDS = 30;
+    // the most keys that are refreshed, and beyond which new keys aren't tracked
+    static final int MAX_HOT_KEYS = 100;
+    private static final int MAX_TRACKED_KEYS = 1000;
+    private static final long MIN_COLD_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final Map<SecretCache.Key, Usage> USAGES = new ConcurrentHashMap<>();
+    private static final Set<SecretCache.Key> REFRESHING = ConcurrentHashMap.newKeySet();
+    private static volatile boolean enabled;
+    private static volatile int threads = DEFAULT_THREADS;
+
+    private SecretPreRefresher() {
+    }
+
+    /**
+     * Applies the global configuration. Disabling it forgets every key.
+     *
+     * @param enabled whether hot secrets are refreshed ahead of expiry
+     * @param threads how many secrets are refreshed at a time
+     */
+    public static void configure(final boolean enabled, final int threads) {
+        SecretPreRefresher.enabled = enabled;
+        SecretPreRefresher.threads = threads > 0 ? threads : DEFAULT_THREADS;
+        if (!enabled) {
+            USAGES.clear();
+        }
+    }
+
+    /**
+     * Counts a fetch of the secret.
+     */
+    static void record(final SecretServerClient client, final SecretCache.Key key) {
+        if (!enabled) {
+            return;
+        }
+        Usage usage = USAGES.get(key);
+
+        if (usage == null) {
+            if (USAGES.size() >= MAX_TRACKED_KEYS) {
+                return;
+            }
+            usage = USAGES.computeIfAbsent(key, k -> new Usage());
+        }
+        usage.record(client);
+    }
+
+    public static int size() {
+        return USAGES.size();
+    }
+
+    /**
+     * Decays the counts, forgets the cold keys and refreshes the hot ones that
+     * are about to expire.
+     */
+    static void run() {
+        final long ttlMillis = SecretCache.get().getTtlMillis();
+
+        if (!enabled || ttlMillis <= 0) {
+            USAGES.clear();
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        final long coldMillis = Math.max(2 * ttlMillis, MIN_COLD_MILLIS);
+        final List<Map.Entry<SecretCache.Key, Usage>> hot = new ArrayList<>();
+
+        USAGES.entrySet().removeIf(entry -> now - entry.getValue().lastUsed > coldMillis);
+        for (final Map.Entry<SecretCache.Key, Usage> entry : USAGES.entrySet()) {
+            entry.getValue().decay();
+            hot.add(entry);
+        }
+        hot.sort(Comparator.comparingDouble((Map.Entry<SecretCache.Key, Usage> entry) -> entry.getValue().score)
+                .reversed());
+
+        final long leadMillis = TimeUnit.SECONDS.toMillis(2 * PERIOD_SECONDS);
+
+        for (final Map.Entry<SecretCache.Key, Usage> entry : hot.subList(0, Math.min(MAX_HOT_KEYS, hot.size()))) {
+            final SecretCache.Key key = entry.getKey();
+            final long freshMillis = SecretCache.get().getFreshMillis(key);
+
+            if (freshMillis < 0 || freshMillis >= leadMillis) {
+                continue; // evicted, or not about to expire
+            }
+            if (REFRESHING.size() >= threads) {
+                break; // the rest wait for the next run, rather than block the periodic work thread
+            }
+            if (!REFRESHING.add(key)) {
+                continue; // still being refreshed since the last run
+            }
+            final boolean submitted = SecretRefreshExecutor.submit(() -> {
+                try {
+                    SecretFetcher.refresh(entry.getValue().client, key);
+                } catch (final IOException | RuntimeException e) {
+                    LOGGER.log(Level.FINE, "Failed to refresh " + key + " ahead of expiry", e);
+                } finally {
+                    REFRESHING.remove(key);
+                }
+            });
+            if (!submitted) {
+                REFRESHING.remove(key);
+            }
+        }
+    }
+
+    /**
+     * How often a key was fetched, with the client it was last fetched with.
+     */
+    private static final class Usage {
+        private final LongAdder fetches = new LongAdder();
+        private volatile SecretServerClient client;
+        private volatile long lastUsed;
+        // the fetches per run, decayed by half every run; only the refresher touches it
+        private double score;
+
+        void record(final SecretServerClient client) {
+            this.client = client;
+            lastUsed = System.currentTimeMillis();
+            fetches.increment();
+        }
+
+        void decay() {
+            score = score / 2 + fetches.sumThenReset();
+        }
+    }
+
+    /**
+     * Runs the refresher every {@link #PERIOD_SECONDS} seconds.
+     */
+    @Extension
+    public static final class PeriodicRefresh extends PeriodicWork {
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.SECONDS.toMillis(PERIOD_SECONDS);
+        }
+
+        @Override
+        protected void doRun() throws Exception {
+            run();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+/**
+ * A small, bounded pool for the fetches that nobody waits for: revalidating
+ * stale secrets, refreshing credentials and hot secrets ahead of expiry, and
+ * fetching invalidated secrets again.
+ * <p>
+ * They block on Secret Server for as long as it takes to answer, so they
+ * don't run on {@link jenkins.util.Timer}, whose few threads all of Jenkins
+ * shares for its periodic work. When the queue is full the refresh is dropped;
+ * the next fetch of the secret tries again.
+ */
+public final class SecretRefreshExecutor {
+    private static final Logger LOGGER = Logger.getLogger(SecretRefreshExecutor.class.getName());
+
+    private static final int THREADS = 4;
+    private static final int MAX_QUEUED = 1000;
+    private static final ThreadPoolExecutor EXECUTOR;
+
+    static {
+        EXECUTOR = new ThreadPoolExecutor(THREADS, THREADS, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(MAX_QUEUED),
+                new NamingThreadFactory(new DaemonThreadFactory(), "SecretServer.refresh"));
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private SecretRefreshExecutor() {
+    }
+
+    /**
+     * Runs the refresh in the background, unless too many are queued already.
+     *
+     * @param refresh the refresh
+     * @return whether it was queued; if not, it never runs
+     */
+    public static boolean submit(final Runnable refresh) {
+        try {
+            EXECUTOR.execute(refresh);
+            return true;
+        } catch (final RejectedExecutionException e) {
+            LOGGER.log(Level.FINE, "Dropped a background refresh: {0} are queued already", MAX_QUEUED);
+            return false;
+        }
+    }
+}
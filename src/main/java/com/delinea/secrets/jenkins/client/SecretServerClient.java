@@ -0,0 +1,124 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * A client for one Secret Server and Jenkins credential, which is all that
+ * {@code VaultClient} and {@code ServerBuildWrapper} need. Get one from
+ * {@link SecretServerClients}.
+ */
+public interface SecretServerClient {
+    /**
+     * @return the Secret Server API root URL e.g.
+     *         {@code https://tenant.secretservercloud.com/api/v1}
+     */
+    String getApiRootUrl();
+
+    /**
+     * @return the id of the Jenkins credential it authenticates with
+     */
+    String getCredentialId();
+
+    /**
+     * @return what identifies the Secret Server account it authenticates as,
+     *         which is what the caches are keyed on, so that credentials that
+     *         share an id but not an account never share what they fetched
+     */
+    String getCredentialIdentity();
+
+    /**
+     * @return a current access token, for a build agent to fetch secrets with
+     *         on behalf of the controller
+     * @throws IOException if Secret Server could not be reached or refused the
+     *                     credential
+     */
+    String getAccessToken() throws IOException;
+
+    /**
+     * Fetches a secret.
+     *
+     * @param id the id of the secret
+     * @return the secret
+     * @throws IOException if Secret Server could not be reached or refused the
+     *                     request
+     */
+    default SecretData getSecret(final int id) throws IOException {
+        return getSecret(id, new FetchTiming());
+    }
+
+    /**
+     * Fetches a secret, adding the time spent getting a token and fetching it
+     * to {@code timing}.
+     *
+     * @param id     the id of the secret
+     * @param timing where to record the time spent
+     * @return the secret
+     * @throws IOException if Secret Server could not be reached or refused the
+     *                     request
+     */
+    SecretData getSecret(int id, @Nonnull FetchTiming timing) throws IOException;
+
+    /**
+     * Fetches only some fields of a secret, with a request per field by its
+     * slug, adding the time spent to {@code timing}. A name is turned into a
+     * slug by lower-casing it and replacing spaces with dashes.
+     *
+     * @param id     the id of the secret
+     * @param fields the names or slugs of the fields
+     * @param timing where to record the time spent
+     * @return the secret, with a field per name or slug, named as given, and
+     *         without a name
+     * @throws IOException if Secret Server could not be reached or refused the
+     *                     request, e.g. because there is no field with that slug
+     */
+    SecretData getSecretFields(int id, @Nonnull List<String> fields, @Nonnull FetchTiming timing)
+            throws IOException;
+
+    /**
+     * Writes the value of a field, e.g. the contents of a file attachment, to
+     * {@code out} as it arrives, adding the time spent to {@code timing}.
+     *
+     * @param id     the id of the secret
+     * @param field  the name or slug of the field
+     * @param out    where to write it; it is left open
+     * @param timing where to record the time spent
+     * @return the number of bytes written
+     * @throws IOException if Secret Server could not be reached or refused the
+     *                     request, or {@code out} could not be written to
+     */
+    long downloadField(int id, @Nonnull String field, @Nonnull OutputStream out, @Nonnull FetchTiming timing)
+            throws IOException;
+
+    /**
+     * Lists a page of the secrets in a folder, but not in its subfolders, or
+     * in any folder, that have some text in their name, adding the time spent
+     * to {@code timing}.
+     *
+     * @param folderId   the id of the folder, or {@code null} for any folder
+     * @param searchText the text, or {@code null} for any name
+     * @param skip       the number of secrets on the pages before
+     * @param take       the maximum number of secrets on the page
+     * @param timing     where to record the time spent
+     * @return the page
+     * @throws IOException if Secret Server could not be reached or refused the
+     *                     request
+     */
+    SecretPage searchSecrets(@CheckForNull Integer folderId, @CheckForNull String searchText, int skip, int take,
+            @Nonnull FetchTiming timing) throws IOException;
+
+    /**
+     * Looks up a folder by its path.
+     *
+     * @param path the names of the folder and its parents, separated by
+     *             {@code \} or {@code /}, e.g. {@code \Jenkins\Production}
+     * @return the id of the folder
+     * @throws IOException if Secret Server could not be reached, refused the
+     *                     request or has no such folder
+     */
+    int getFolderId(@Nonnull String path) throws IOException;
+}
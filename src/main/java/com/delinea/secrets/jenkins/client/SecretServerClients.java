@@ -0,0 +1,130 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.StringUtils;
+
+import hudson.util.Secret;
+
+/**
+ * A controller-wide registry of ready-to-use {@link SecretServerClient}s.
+ * <p>
+ * The registry keeps one client per (API root URL, token URL, credential
+ * identity), so credentials that share an id but not a username and password,
+ * e.g. in different folders, or a credential before and after it changed,
+ * never share a client or its access token. It forgets clients that have been
+ * idle for {@link #IDLE_TIMEOUT_MILLIS}.
+ */
+public final class SecretServerClients {
+    private static final Logger LOGGER = Logger.getLogger(SecretServerClients.class.getName());
+
+    static final long IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private static final long SWEEP_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final Map<Key, Entry> CLIENTS = new ConcurrentHashMap<>();
+    private static volatile long lastSweep = System.currentTimeMillis();
+
+    private SecretServerClients() {
+    }
+
+    /**
+     * Returns the client for this API root URL, token URL and credential,
+     * creating it if there isn't one yet.
+     *
+     * @param apiRootUrl   the Secret Server API root URL e.g. {@code https://tenant.secretservercloud.com/api/v1}
+     * @param tokenUrl     the Secret Server OAuth2 token URL
+     * @param credentialId the id of the Jenkins credential
+     * @param username     the username of that credential
+     * @param password     the password of that credential
+     * @return a {@link SecretServerClient} that may be shared with other callers
+     * @throws IllegalArgumentException if either URL is blank
+     */
+    public static SecretServerClient get(@Nullable final String apiRootUrl, @Nullable final String tokenUrl,
+            @Nullable final String credentialId, @Nonnull final String username, @Nonnull final Secret password) {
+        if (StringUtils.isBlank(apiRootUrl) || StringUtils.isBlank(tokenUrl)) {
+            throw new IllegalArgumentException("The Secret Server URL is required");
+        }
+        sweep();
+        final Key key = new Key(apiRootUrl, tokenUrl,
+                HttpSecretServerClient.identity(credentialId, username, password));
+        final Entry entry = CLIENTS.computeIfAbsent(key,
+                k -> new Entry(new HttpSecretServerClient(apiRootUrl, tokenUrl, credentialId, username, password)));
+        entry.lastUsed = System.currentTimeMillis();
+        return entry.client;
+    }
+
+    /**
+     * @return a client for this API root URL and credential identity that is in
+     *         use, or {@code null} if there is none
+     */
+    @Nullable
+    public static SecretServerClient find(@Nullable final String apiRootUrl,
+            @Nullable final String credentialIdentity) {
+        for (final Map.Entry<Key, Entry> entry : CLIENTS.entrySet()) {
+            if (Objects.equals(apiRootUrl, entry.getKey().apiRootUrl)
+                    && Objects.equals(credentialIdentity, entry.getKey().credentialIdentity)) {
+                return entry.getValue().client;
+            }
+        }
+        return null;
+    }
+
+    private static void sweep() {
+        final long now = System.currentTimeMillis();
+        if (now - lastSweep < SWEEP_INTERVAL_MILLIS) {
+            return;
+        }
+        lastSweep = now;
+        CLIENTS.forEach((key, entry) -> {
+            if (now - entry.lastUsed > IDLE_TIMEOUT_MILLIS && CLIENTS.remove(key, entry)) {
+                LOGGER.log(Level.FINE, "Evicting idle Secret Server client for {0}", key.apiRootUrl);
+            }
+        });
+    }
+
+    private static final class Key {
+        private final String apiRootUrl, tokenUrl, credentialIdentity;
+
+        Key(final String apiRootUrl, final String tokenUrl, final String credentialIdentity) {
+            this.apiRootUrl = apiRootUrl;
+            this.tokenUrl = tokenUrl;
+            this.credentialIdentity = credentialIdentity;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return Objects.equals(apiRootUrl, other.apiRootUrl) && Objects.equals(tokenUrl, other.tokenUrl)
+                    && Objects.equals(credentialIdentity, other.credentialIdentity);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(apiRootUrl, tokenUrl, credentialIdentity);
+        }
+    }
+
+    private static final class Entry {
+        private final SecretServerClient client;
+        private volatile long lastUsed;
+
+        Entry(final SecretServerClient client) {
+            this.client = client;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+}
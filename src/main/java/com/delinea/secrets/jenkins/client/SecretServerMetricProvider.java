@@ -0,0 +1,26 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+
+import hudson.Extension;
+import jenkins.metrics.api.MetricProvider;
+
+/**
+ * Publishes the {@link SecretServerMetrics} through the Metrics plugin, when
+ * it is installed.
+ */
+@Extension(optional = true)
+public class SecretServerMetricProvider extends MetricProvider {
+    @Override
+    public MetricSet getMetricSet() {
+        final Map<String, Metric> metrics = new LinkedHashMap<>();
+
+        SecretServerMetrics.getMetrics().forEach((name, value) -> metrics.put(name, (Gauge<Number>) value::get));
+        return () -> metrics;
+    }
+}
@@ -0,0 +1,352 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.apache.http.conn.ConnectTimeoutException;
+
+/**
+ * The plugin's own registry of counters, meters and latency histograms for
+ * the calls to Secret Server, the cache and masking.
+ * <p>
+ * It doesn't need the Metrics plugin so it is always there; when that is
+ * installed, {@link SecretServerMetricProvider} publishes it as gauges. All
+ * the metrics are lock-free so recording them costs next to nothing on the
+ * hot paths.
+ */
+public final class SecretServerMetrics {
+    public static final String PREFIX = "secretserver.";
+
+    /** OAuth2 token requests. */
+    public static final Timer TOKEN = new Timer();
+    /** Authenticated API requests: secrets, fields, folder listings and path lookups alike. */
+    public static final Timer REQUEST = new Timer();
+    /** {@code ServerBuildWrapper.setUp}, i.e. getting all the secrets of a build. */
+    public static final Timer BUILD_SETUP = new Timer();
+    /** {@code VaultClient.fetchCredentials}, i.e. resolving a Secret Server credential. */
+    public static final Timer CREDENTIAL_FETCH = new Timer();
+
+    public static final Counter CACHE_HITS = new Counter();
+    public static final Counter CACHE_STALE_HITS = new Counter();
+    public static final Counter CACHE_MISSES = new Counter();
+
+    /** The bytes of build logs scanned for values to mask. */
+    public static final Meter MASKED_BYTES = new Meter();
+
+    /**
+     * The kinds of failed calls to Secret Server.
+     */
+    public enum ErrorType {
+        UNAUTHORIZED, NOT_FOUND, CLIENT_ERROR, SERVER_ERROR, TIMEOUT, CONNECTION;
+
+        static ErrorType of(final IOException e) {
+            if (e instanceof HttpSupport.HttpStatusException) {
+                final int status = ((HttpSupport.HttpStatusException) e).getStatus();
+
+                if (status == 401) {
+                    return UNAUTHORIZED;
+                }
+                if (status == 404) {
+                    return NOT_FOUND;
+                }
+                return status < 500 ? CLIENT_ERROR : SERVER_ERROR;
+            }
+            return e instanceof SocketTimeoutException || e instanceof ConnectTimeoutException ? TIMEOUT : CONNECTION;
+        }
+    }
+
+    private static final Map<ErrorType, Counter> ERRORS = new EnumMap<>(ErrorType.class);
+
+    static {
+        for (final ErrorType type : ErrorType.values()) {
+            ERRORS.put(type, new Counter());
+        }
+    }
+
+    private SecretServerMetrics() {
+    }
+
+    /**
+     * Counts a failed call to Secret Server.
+     */
+    static void error(final IOException e) {
+        ERRORS.get(ErrorType.of(e)).inc();
+    }
+
+    public static long getErrorCount(final ErrorType type) {
+        return ERRORS.get(type).getCount();
+    }
+
+    /**
+     * @return the current value of every metric by name, which is what
+     *         {@link SecretServerMetricProvider} publishes
+     */
+    public static Map<String, Supplier<Number>> getMetrics() {
+        final Map<String, Supplier<Number>> metrics = new LinkedHashMap<>();
+
+        TOKEN.addTo(metrics, PREFIX + "token");
+        REQUEST.addTo(metrics, PREFIX + "request");
+        BUILD_SETUP.addTo(metrics, PREFIX + "build.setup");
+        CREDENTIAL_FETCH.addTo(metrics, PREFIX + "credential.fetch");
+        ERRORS.forEach((type, counter) -> metrics.put(PREFIX + "errors." + type.name().toLowerCase(Locale.ENGLISH),
+                counter::getCount));
+        metrics.put(PREFIX + "cache.hits", CACHE_HITS::getCount);
+        metrics.put(PREFIX + "cache.stale_hits", CACHE_STALE_HITS::getCount);
+        metrics.put(PREFIX + "cache.misses", CACHE_MISSES::getCount);
+        metrics.put(PREFIX + "masking.bytes", MASKED_BYTES::getCount);
+        metrics.put(PREFIX + "masking.bytes_per_second", MASKED_BYTES::getOneMinuteRate);
+        return metrics;
+    }
+
+    /**
+     * A monotonic count.
+     */
+    public static final class Counter {
+        private final LongAdder count = new LongAdder();
+
+        public void inc() {
+            count.increment();
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+    }
+
+    /**
+     * A count with its rate over the last minute.
+     */
+    public static final class Meter {
+        private static final int WINDOW_SECONDS = 60;
+
+        private final LongAdder count = new LongAdder();
+        // a ring of per-second counts, each with the second it counts
+        private final LongAdder[] slots = new LongAdder[WINDOW_SECONDS];
+        private final AtomicLongArray slotSeconds = new AtomicLongArray(WINDOW_SECONDS);
+
+        Meter() {
+            for (int i = 0; i < WINDOW_SECONDS; i++) {
+                slots[i] = new LongAdder();
+            }
+        }
+
+        public void mark(final long n) {
+            final long second = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+            final int slot = (int) (second % WINDOW_SECONDS);
+            final long slotSecond = slotSeconds.get(slot);
+
+            // the first to get to a slot a minute later resets it; racing marks may be lost, which is fine for a rate
+            if (slotSecond != second && slotSeconds.compareAndSet(slot, slotSecond, second)) {
+                slots[slot].reset();
+            }
+            slots[slot].add(n);
+            count.add(n);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return the average count per second over the last minute
+         */
+        public double getOneMinuteRate() {
+            final long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+            long sum = 0;
+
+            for (int i = 0; i < WINDOW_SECONDS; i++) {
+                if (now - slotSeconds.get(i) < WINDOW_SECONDS) {
+                    sum += slots[i].sum();
+                }
+            }
+            return sum / (double) WINDOW_SECONDS;
+        }
+    }
+
+    /**
+     * A latency histogram with fixed buckets, from 1 ms to 1 min, over the last
+     * five minutes so that a regression shows right away. Percentiles are
+     * estimated as the upper bound of their bucket, which is precise enough to
+     * alert on and never allocates.
+     */
+    public static final class Timer {
+        // the upper bounds of the buckets in milliseconds; the last bucket has none
+        private static final long[] BOUNDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000,
+                60000 };
+        private static final int WINDOW_MINUTES = 5;
+
+        private final LongAdder count = new LongAdder();
+        // a ring of per-minute histograms, each with the minute it covers
+        private final Histogram[] slots = new Histogram[WINDOW_MINUTES];
+        private final AtomicLongArray slotMinutes = new AtomicLongArray(WINDOW_MINUTES);
+
+        Timer() {
+            for (int i = 0; i < WINDOW_MINUTES; i++) {
+                slots[i] = new Histogram();
+            }
+        }
+
+        /**
+         * Records the time since {@code startNanos}, a {@link System#nanoTime()}.
+         */
+        public void stop(final long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public void record(final long nanos) {
+            final long minute = TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+            final int slot = (int) (minute % WINDOW_MINUTES);
+            final long slotMinute = slotMinutes.get(slot);
+
+            // as in Meter, the first to get to a slot a window later resets it
+            if (slotMinute != minute && slotMinutes.compareAndSet(slot, slotMinute, minute)) {
+                slots[slot].reset();
+            }
+            slots[slot].record(nanos);
+            count.increment();
+        }
+
+        /**
+         * @return the number of times recorded since the controller started
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return the mean over the last five minutes, or 0 if nothing was
+         *         recorded in them
+         */
+        public double getMeanMillis() {
+            long n = 0, nanos = 0;
+
+            for (final Histogram slot : recent()) {
+                n += slot.count.sum();
+                nanos += slot.totalNanos.sum();
+            }
+            return n == 0 ? 0 : toMillis(nanos) / n;
+        }
+
+        /**
+         * @return the maximum over the last five minutes, or 0 if nothing was
+         *         recorded in them
+         */
+        public double getMaxMillis() {
+            long max = 0;
+
+            for (final Histogram slot : recent()) {
+                max = Math.max(max, slot.maxNanos.get());
+            }
+            return toMillis(max);
+        }
+
+        /**
+         * @param quantile between 0 and 1
+         * @return an upper bound of the quantile over the last five minutes in
+         *         milliseconds, or 0 if nothing was recorded in them
+         */
+        public double getPercentileMillis(final double quantile) {
+            final long[] counts = new long[BOUNDS.length + 1];
+            long total = 0;
+
+            for (final Histogram slot : recent()) {
+                for (int i = 0; i < counts.length; i++) {
+                    final long n = slot.buckets[i].sum();
+
+                    counts[i] += n;
+                    total += n;
+                }
+            }
+            if (total == 0) {
+                return 0;
+            }
+            final long rank = (long) Math.ceil(quantile * total);
+            final double max = getMaxMillis();
+            long seen = 0;
+
+            for (int i = 0; i < BOUNDS.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(BOUNDS[i], max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * @return the histograms of the minutes in the window
+         */
+        private List<Histogram> recent() {
+            final long now = TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+            final List<Histogram> recent = new ArrayList<>(WINDOW_MINUTES);
+
+            for (int i = 0; i < WINDOW_MINUTES; i++) {
+                if (now - slotMinutes.get(i) < WINDOW_MINUTES) {
+                    recent.add(slots[i]);
+                }
+            }
+            return recent;
+        }
+
+        private void addTo(final Map<String, Supplier<Number>> metrics, final String name) {
+            metrics.put(name + ".count", this::getCount);
+            metrics.put(name + ".mean_ms", this::getMeanMillis);
+            metrics.put(name + ".p50_ms", () -> getPercentileMillis(0.50));
+            metrics.put(name + ".p95_ms", () -> getPercentileMillis(0.95));
+            metrics.put(name + ".p99_ms", () -> getPercentileMillis(0.99));
+            metrics.put(name + ".max_ms", this::getMaxMillis);
+        }
+
+        private static double toMillis(final long nanos) {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        /**
+         * The latencies recorded in one minute.
+         */
+        private static final class Histogram {
+            private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+            private final LongAdder count = new LongAdder(), totalNanos = new LongAdder();
+            private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+            Histogram() {
+                for (int i = 0; i < buckets.length; i++) {
+                    buckets[i] = new LongAdder();
+                }
+            }
+
+            void record(final long nanos) {
+                final long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+                int bucket = 0;
+
+                while (bucket < BOUNDS.length && millis >= BOUNDS[bucket]) {
+                    bucket++;
+                }
+                buckets[bucket].increment();
+                count.increment();
+                totalNanos.add(nanos);
+                maxNanos.accumulate(nanos);
+            }
+
+            void reset() {
+                for (final LongAdder bucket : buckets) {
+                    bucket.reset();
+                }
+                count.reset();
+                totalNanos.reset();
+                maxNanos.reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.delinea.secrets.jenkins.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.http.conn.ConnectTimeoutException;
+
+/**
+ * Coalesces identical concurrent calls: while a call for a key is in flight,
+ * other callers with the same key wait for it and share its result or its
+ * failure instead of making their own. If the call failed only because its
+ * caller was interrupted, e.g. its build was aborted, the waiters don't share
+ * that: one of them makes the call again.
+ *
+ * @param <K> the type of the key
+ * @param <V> the type of the result, which should be immutable since it is
+ *            shared
+ */
+final class SingleFlight<K, V> {
+    /**
+     * A call that may throw an {@link IOException}.
+     */
+    interface Call<V> {
+        V call() throws IOException;
+    }
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    V run(final K key, final Call<V> call) throws IOException {
+        while (true) {
+            final CompletableFuture<V> mine = new CompletableFuture<>();
+            final CompletableFuture<V> theirs = inFlight.putIfAbsent(key, mine);
+
+            if (theirs == null) {
+                return lead(key, mine, call);
+            }
+            try {
+                return theirs.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a concurrent request");
+            } catch (final ExecutionException e) {
+                if (!isAbort(e.getCause())) {
+                    throw shared(e.getCause());
+                }
+                // the leader's caller gave up, which is no reason for this one to; try again, leading if need be
+            }
+        }
+    }
+
+    private V lead(final K key, final CompletableFuture<V> mine, final Call<V> call) throws IOException {
+        try {
+            final V value = call.call();
+
+            mine.complete(value);
+            return value;
+        } catch (final IOException | RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * @return whether the failure is the leader's thread being interrupted,
+     *         e.g. because its build was aborted, rather than a failure of
+     *         the call itself, such as a timeout
+     */
+    static boolean isAbort(final Throwable cause) {
+        if (cause instanceof SocketTimeoutException || cause instanceof ConnectTimeoutException) {
+            return false;
+        }
+        return cause instanceof InterruptedIOException || cause instanceof ClosedByInterruptException
+                || cause instanceof CancellationException;
+    }
+
+    /**
+     * Wraps the shared failure so that each waiter gets its own stack trace.
+     */
+    private static IOException shared(final Throwable cause) {
+        if (cause instanceof IOException) {
+            return new IOException(cause.getMessage(), cause);
+        }
+        if (cause instanceof RuntimeException) {
+            throw new RuntimeException(cause.getMessage(), cause);
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+}
@@ -1,11 +1,17 @@
 package com.delinea.secrets.jenkins.global.cred;
 
 import java.io.IOException;
-import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.annotation.Nullable;
 import javax.servlet.ServletException;
 
+import org.acegisecurity.Authentication;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
@@ -18,12 +24,17 @@ import com.cloudbees.plugins.credentials.CredentialsScope;
 import com.cloudbees.plugins.credentials.common.StandardCredentials;
 import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
 import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+import com.delinea.secrets.jenkins.client.SecretInvalidation;
+import com.delinea.secrets.jenkins.client.SecretRefreshExecutor;
 import com.delinea.secrets.jenkins.global.cred.VaultClient.UsernamePassword;
+import com.delinea.secrets.jenkins.wrapper.cred.ServerConfiguration;
 import com.delinea.secrets.jenkins.wrapper.cred.UserCredentials;
+import com.delinea.secrets.jenkins.wrapper.cred.UserCredentialsIndex;
 
 import hudson.Extension;
 import hudson.model.Item;
 import hudson.security.ACL;
+import hudson.security.ACLContext;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import hudson.util.Secret;
@@ -31,12 +42,13 @@ import jenkins.model.Jenkins;
 
 public class SecretServerCredentials extends UsernamePasswordCredentialsImpl implements StandardCredentials {
 	private static final long serialVersionUID = 1L;
+	private static final Logger LOGGER = Logger.getLogger(SecretServerCredentials.class.getName());
 	private final String usernameSlug;
 	private final String passwordSlugName;
 	private final String vaultUrl;
 	private final String credentialId;
 	private final String secretId;
-	private transient UsernamePassword vaultCredential;
+	private transient volatile Map<String, CachedCredential> vaultCredentials;
 
 	/**
 	 * Constructor to initialize the SecretServerCredentials object.
@@ -46,7 +58,8 @@ public class SecretServerCredentials extends UsernamePasswordCredentialsImpl imp
 	 * @param description   - A description for the credentials.
 	 * @param vaultUrl      - The URL of the Secret Server.
 	 * @param credentialId- The ID of the credentials stored in Jenkins.
-	 * @param secretId      - The ID of the secret stored in the Secret Server.
+	 * @param secretId      - The ID of the secret stored in the Secret Server, or
+	 *                      its name with the path of its folder.
 	 */
 	@DataBoundConstructor
 	public SecretServerCredentials(final CredentialsScope scope, final String id, final String description, String vaultUrl,
@@ -57,7 +70,6 @@ public class SecretServerCredentials extends UsernamePasswordCredentialsImpl imp
 		this.vaultUrl = vaultUrl;
 		this.credentialId = credentialId;
 		this.secretId = secretId;
-		this.vaultCredential = null;
 	}
 
 	public String getVaultUrl() {
@@ -87,7 +99,7 @@ public class SecretServerCredentials extends UsernamePasswordCredentialsImpl imp
 	 */
 	@Override
 	public String getUsername() {
-		return getVaultCredential(getContextItem()).getUsername();
+		return getUsernamePassword().getUsername();
 	}
 
 	/**
@@ -98,7 +110,21 @@ public class SecretServerCredentials extends UsernamePasswordCredentialsImpl imp
 	 */
 	@Override
 	public Secret getPassword() {
-		return Secret.fromString(getVaultCredential(getContextItem()).getPassword());
+		return Secret.fromString(getUsernamePassword().getPassword());
+	}
+
+	/**
+	 * Fetches the username and the password from the Secret Server together.
+	 * <p>
+	 * {@link #getUsername()} and {@link #getPassword()} each read the cached
+	 * credentials on their own, so a refresh in between can give them values of
+	 * two different fetches. Callers that need a matching pair, for example when
+	 * the username of the secret can change, should read both from here.
+	 *
+	 * @return The username and password of one fetch, which are never null.
+	 */
+	public UsernamePassword getUsernamePassword() {
+		return getVaultCredential(getContextItem()).value;
 	}
 
 	@Nullable
@@ -114,28 +140,120 @@ public class SecretServerCredentials extends UsernamePasswordCredentialsImpl imp
     }
 
 	/**
-	 * Fetches the credentials (username and password) from the Secret Server only
-	 * once and caches it.
+	 * Fetches the credentials (username and password) from the Secret Server and
+	 * caches them for the context they were resolved in.
+	 * <p>
+	 * Cached credentials are returned as-is for the refresh interval. For one more
+	 * interval after that they are still returned, but a background refresh is
+	 * started, so callers don't wait on the Secret Server in steady state. Once
+	 * they are twice the interval old they are fetched again before returning, so
+	 * a rotated password is seen within two intervals at most, or as soon as the
+	 * secret is invalidated.
 	 *
-	 * @return The UsernamePassword object containing the fetched credentials.
+	 * @return The cached credentials, whose username and password are never null.
 	 * @throws RuntimeException if the credentials cannot be fetched from the Secret
 	 *                          Server.
 	 */
-	private UsernamePassword getVaultCredential(@Nullable Item contextItem) {
-		if (vaultCredential == null) {
-			try {
-				UserCredentials credential = UserCredentials.get(credentialId, contextItem);
-				if (credential == null) {
-					throw new RuntimeException(
-							"UserCredentials with the specified credentialId not found in the folder context.");
+	private CachedCredential getVaultCredential(@Nullable Item contextItem) {
+		String contextKey = contextKey(contextItem);
+		CachedCredential cached = vaultCredentials().get(contextKey);
+
+		if (cached != null && !cached.isInvalidated()) {
+			long refreshMillis = TimeUnit.SECONDS.toMillis(ServerConfiguration.get().getCredentialRefreshSeconds());
+			long age = System.currentTimeMillis() - cached.fetchedAt;
+
+			if (age < refreshMillis) {
+				return cached;
+			}
+			if (age < 2 * refreshMillis) {
+				refreshInBackground(contextKey, contextItem, cached);
+				return cached;
+			}
+		}
+		return refresh(contextKey, contextItem);
+	}
+
+	private static String contextKey(@Nullable Item contextItem) {
+		return contextItem == null ? "" : contextItem.getFullName();
+	}
+
+	private Map<String, CachedCredential> vaultCredentials() {
+		Map<String, CachedCredential> credentials = vaultCredentials;
+
+		if (credentials == null) {
+			synchronized (this) {
+				if (vaultCredentials == null) {
+					vaultCredentials = new ConcurrentHashMap<>();
 				}
-				vaultCredential = new VaultClient().fetchCredentials(vaultUrl, secretId, credential.getUsername(),
-						credential.getPassword().getPlainText(), usernameSlug, passwordSlugName);
-			} catch (Exception e) {
-				throw new RuntimeException("Failed to fetch credentials from vault. " + e.getMessage());
+				credentials = vaultCredentials;
+			}
+		}
+		return credentials;
+	}
+
+	private CachedCredential refresh(String contextKey, @Nullable Item contextItem) {
+		// taken before the fetch, so that an invalidation during it isn't missed
+		long sequence = SecretInvalidation.current();
+
+		try {
+			UserCredentials credential = UserCredentials.get(credentialId, contextItem);
+			if (credential == null) {
+				throw new RuntimeException(
+						"UserCredentials with the specified credentialId not found in the folder context.");
+			}
+			UsernamePassword value = new VaultClient().fetchCredentials(vaultUrl, secretId, credential, usernameSlug,
+					passwordSlugName);
+			if (value == null || value.getUsername() == null) {
+				throw new RuntimeException("Secret " + secretId + " has no " + usernameSlug + " or "
+						+ passwordSlugName + " field.");
+			}
+			CachedCredential cached = new CachedCredential(value, sequence);
+			vaultCredentials().put(contextKey, cached);
+			return cached;
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to fetch credentials from vault. " + e.getMessage());
+		}
+	}
+
+	private void refreshInBackground(String contextKey, @Nullable Item contextItem, CachedCredential cached) {
+		if (!cached.refreshing.compareAndSet(false, true)) {
+			return; // somebody else is already refreshing it
+		}
+		// refresh with the same permissions as the caller, since they scope the credential lookup
+		Authentication authentication = Jenkins.getAuthentication();
+
+		boolean submitted = SecretRefreshExecutor.submit(() -> {
+			try (ACLContext ignored = ACL.as(authentication)) {
+				refresh(contextKey, contextItem);
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.WARNING, "Background refresh of credentials " + getId() + " failed", e);
+			} finally {
+				cached.refreshing.set(false);
 			}
+		});
+		if (!submitted) {
+			cached.refreshing.set(false);
+		}
+	}
+
+	/**
+	 * Credentials fetched from the Secret Server, and when.
+	 */
+	private static final class CachedCredential {
+		private final UsernamePassword value;
+		private final long fetchedAt = System.currentTimeMillis();
+		// the invalidation sequence number when they were fetched
+		private final long sequence;
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		CachedCredential(UsernamePassword value, long sequence) {
+			this.value = value;
+			this.sequence = sequence;
+		}
+
+		boolean isInvalidated() {
+			return SecretInvalidation.isInvalidatedSince(value.getSecretId(), sequence);
 		}
-		return vaultCredential;
 	}
 
 	@Extension
@@ -160,8 +278,8 @@ public class SecretServerCredentials extends UsernamePasswordCredentialsImpl imp
 		        return new StandardListBoxModel();
 		    }
 		    return new StandardListBoxModel()
-		            .includeEmptyValue() 
-		            .includeAs(ACL.SYSTEM, owner, UserCredentials.class); 
+		            .includeEmptyValue()
+		            .withAll(UserCredentialsIndex.forContext(owner).values());
 		}
 
 		/**
@@ -178,8 +296,7 @@ public class SecretServerCredentials extends UsernamePasswordCredentialsImpl imp
 				return FormValidation.error("Credential ID is required.");
 			}
 			// Check if the Credential ID exists within the specified item context
-			if (CredentialsProvider.lookupCredentials(UserCredentials.class, item, ACL.SYSTEM, Collections.emptyList())
-					.stream().noneMatch(cred -> cred.getId().equals(value))) {
+			if (!UserCredentialsIndex.forContext(item).containsKey(value)) {
 				return FormValidation.error("Credential ID not found. Please provide a valid ID.");
 			}
 			return FormValidation.ok();
@@ -198,10 +315,15 @@ public class SecretServerCredentials extends UsernamePasswordCredentialsImpl imp
 			if (StringUtils.isBlank(value)) {
 				return FormValidation.error("Secret ID is required.");
 			}
-			try {
-				Integer.parseInt(value);
-			} catch (NumberFormatException e) {
-				return FormValidation.error("ID must be an integer.");
+			if (StringUtils.isNumeric(value.trim())) {
+				return FormValidation.ok();
+			}
+			// a path, looked up when the credential is used
+			if (StringUtils.strip(value, "\\/ ").isEmpty()) {
+				return FormValidation.error("ID must be an integer or a path.");
+			}
+			if (StringUtils.containsNone(StringUtils.strip(value, "\\/ "), "\\/")) {
+				return FormValidation.warning("A name without a folder path must be unique across all folders.");
 			}
 			return FormValidation.ok();
 		}
@@ -272,8 +394,7 @@ public class SecretServerCredentials extends UsernamePasswordCredentialsImpl imp
 			
 			try {
 				UserCredentials credential = UserCredentials.get(credentialId, owner);
-				new VaultClient().fetchCredentials(vaultUrl, secretId, credential.getUsername(),
-						credential.getPassword().getPlainText(), usernameSlug,passwordSlugName);
+				new VaultClient().fetchCredentials(vaultUrl, secretId, credential, usernameSlug, passwordSlugName);
 				return FormValidation.ok("Connection successful.");
 			} catch (Exception e) {
 				return FormValidation.error("Failed to establish connection: " + e.getMessage());
@@ -1,93 +1,137 @@
 package com.delinea.secrets.jenkins.global.cred;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.util.Arrays;
 
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.context.annotation.AnnotationConfigApplicationContext;
-import org.springframework.core.env.MapPropertySource;
 
-import com.thycotic.secrets.server.spring.Secret;
-import com.thycotic.secrets.server.spring.SecretServer;
-import com.thycotic.secrets.server.spring.SecretServerFactoryBean;
+import com.delinea.secrets.jenkins.client.FetchTiming;
+import com.delinea.secrets.jenkins.client.SecretData;
+import com.delinea.secrets.jenkins.client.SecretFetcher;
+import com.delinea.secrets.jenkins.client.SecretIndex;
+import com.delinea.secrets.jenkins.client.SecretServerClient;
+import com.delinea.secrets.jenkins.client.SecretServerClients;
+import com.delinea.secrets.jenkins.client.SecretServerMetrics;
+import com.delinea.secrets.jenkins.wrapper.cred.UserCredentials;
 
 
 public class VaultClient {
-	private static final String USERNAME_PROPERTY = "secret_server.oauth2.username";
-	private static final String PASSWORD_PROPERTY = "secret_server.oauth2.password";
-	private static final String API_ROOT_URL_PROPERTY = "secret_server.api_root_url";
-	private static final String OAUTH2_TOKEN_URL_PROPERTY = "secret_server.oauth2.token_url";
+	private static final String API_PATH_URI = "/api/v1";
+	private static final String TOKEN_PATH_URI = "/oauth2/token";
 
 	public VaultClient() {
 	}
 
+	/**
+	 * Fetches credentials from the Secret Server using the provided Vault URL,
+	 * secret ID and Jenkins credential.
+	 *
+	 * @param vaultUrl The base URL of the Secret server.
+	 * @param secretId The ID of the secret to fetch, or its name with the path of
+	 *                 its folder.
+	 * @param credential The credential used to authenticate with the Vault.
+	 * @param usernameSlug The slug or name of the username field.
+	 * @param passwordSlugName The slug or name of the password field.
+	 * @return A UsernamePassword object containing the fetched credentials, or null
+	 *         if not found.
+	 * @throws Exception if there is an error during the fetching process.
+	 */
+	public UsernamePassword fetchCredentials(String vaultUrl, String secretId, UserCredentials credential,
+			String usernameSlug, String passwordSlugName) throws Exception {
+		return fetchCredentials(vaultUrl, secretId, credential.getId(), credential.getUsername(),
+				credential.getPassword(), usernameSlug, passwordSlugName);
+	}
+
 	/**
 	 * Fetches credentials from the Secret Server using the provided Vault URL,
 	 * secret ID, username, and password.
 	 *
 	 * @param vaultUrl The base URL of the Secret server.
-	 * @param secretId The ID of the secret to fetch.
+	 * @param secretId The ID of the secret to fetch, or its name with the path of
+	 *                 its folder.
 	 * @param username The username for authenticating with the Vault.
 	 * @param password The password for authenticating with the Vault.
-	 * @param usernameSlug 
-	 * @param passwordSlugName 
+	 * @param usernameSlug The slug or name of the username field.
+	 * @param passwordSlugName The slug or name of the password field.
 	 * @return A UsernamePassword object containing the fetched credentials, or null
 	 *         if not found.
 	 * @throws Exception if there is an error during the fetching process.
+	 * @deprecated Use
+	 *             {@link #fetchCredentials(String, String, UserCredentials, String, String)},
+	 *             which shares the client of the Jenkins credential.
 	 */
-	public UsernamePassword fetchCredentials(String vaultUrl, String secretId, String username, String password, String usernameSlug, String passwordSlugName)
+	@Deprecated
+	public UsernamePassword fetchCredentials(String vaultUrl, String secretId, String username, String password,
+			String usernameSlug, String passwordSlugName) throws Exception {
+		return fetchCredentials(vaultUrl, secretId, null, username, hudson.util.Secret.fromString(password),
+				usernameSlug, passwordSlugName);
+	}
+
+	private UsernamePassword fetchCredentials(String vaultUrl, String secretId, String credentialId,
+			String username, hudson.util.Secret password, String usernameSlug, String passwordSlugName)
 			throws Exception {
-		// Create a map to hold properties for the Secret Server connection
-		Map<String, Object> properties = new HashMap<>();
+		long start = System.nanoTime();
+
+		try {
+			return fetch(vaultUrl, secretId, credentialId, username, password, usernameSlug, passwordSlugName);
+		} finally {
+			SecretServerMetrics.CREDENTIAL_FETCH.stop(start);
+		}
+	}
+
+	private UsernamePassword fetch(String vaultUrl, String secretId, String credentialId, String username,
+			hudson.util.Secret password, String usernameSlug, String passwordSlugName) throws Exception {
+		String apiRootUrl = null, tokenUrl = null;
 
 		// Remove trailing slash from the Vault URL if present
 		String ssurl = StringUtils.removeEnd(vaultUrl, "/");
 		if (StringUtils.isNotBlank(ssurl)) {
-			properties.put(API_ROOT_URL_PROPERTY, ssurl + "/api/v1");
-			properties.put(OAUTH2_TOKEN_URL_PROPERTY, ssurl + "/oauth2/token");
+			apiRootUrl = ssurl + API_PATH_URI;
+			tokenUrl = ssurl + TOKEN_PATH_URI;
 		}
 
-		properties.put(USERNAME_PROPERTY, username);
-		properties.put(PASSWORD_PROPERTY, password);
-
-		// Create and configure the application context with the Secret Server
-		try (AnnotationConfigApplicationContext applicationContext = new AnnotationConfigApplicationContext()) {
-			applicationContext.getEnvironment().getPropertySources()
-					.addLast(new MapPropertySource("properties", properties));
-			applicationContext.registerBean(SecretServerFactoryBean.class);
-			applicationContext.refresh();
-
-			// Fetch the secret using the provided secret ID
-			Secret secret = applicationContext.getBean(SecretServer.class).getSecret(Integer.parseInt(secretId));
-			// Extract the username and password fields from the secret
-			Optional<String> fetchUsername = secret.getFields().stream()
-					.filter(field -> usernameSlug.equalsIgnoreCase(field.getFieldName())|| usernameSlug.equalsIgnoreCase(field.getSlug())).map(Secret.Field::getValue)
-					.findFirst();
-
-			Optional<String> fetchPassword = secret.getFields().stream()
-					.filter(field -> passwordSlugName.equalsIgnoreCase(field.getFieldName()) || passwordSlugName.equalsIgnoreCase(field.getSlug())).map(Secret.Field::getValue)
-					.findFirst();
-			
-			// Return the fetched credentials if both username and password are present
-			if (fetchUsername.isPresent() && fetchPassword.isPresent()) {
-				UsernamePassword usernamePassword = new UsernamePassword(fetchUsername.get(), fetchPassword.get());
-				return usernamePassword;
-			} else {
-				return null;
-			}
+		// Reuse the client for this server and credential, if there is one
+		SecretServerClient client = SecretServerClients.get(apiRootUrl, tokenUrl, credentialId, username, password);
+		// Fetch the secret, or only its username and password fields, using the
+		// provided secret ID, or the ID its path resolves to, unless it is cached
+		SecretData secret = SecretFetcher.fetch(client, SecretIndex.get().resolve(client, secretId),
+				Arrays.asList(usernameSlug, passwordSlugName), new FetchTiming());
+		// Extract the username and password fields from the secret
+		SecretData.Field fetchUsername = secret.getField(usernameSlug);
+		SecretData.Field fetchPassword = secret.getField(passwordSlugName);
+
+		// Return the fetched credentials if both username and password are present
+		if (fetchUsername != null && fetchPassword != null) {
+			UsernamePassword usernamePassword = new UsernamePassword(secret.getId(), fetchUsername.getValue(),
+					fetchPassword.getValue());
+			return usernamePassword;
+		} else {
+			return null;
 		}
 	}
 
 	public static class UsernamePassword {
+		private final int secretId;
 		private final String username;
 		private final hudson.util.Secret password;
 
 		public UsernamePassword(String username, String password) {
+			this(-1, username, password);
+		}
+
+		public UsernamePassword(int secretId, String username, String password) {
+			this.secretId = secretId;
 			this.username = username;
 			this.password = hudson.util.Secret.fromString(password);
 		}
 
+		/**
+		 * @return The ID of the secret the credentials were fetched from, or -1 if
+		 *         it isn't known.
+		 */
+		public int getSecretId() {
+			return secretId;
+		}
+
 		public String getPassword() {
 			return password.getPlainText();
 		}
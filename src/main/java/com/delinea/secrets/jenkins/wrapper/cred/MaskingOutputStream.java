@@ -0,0 +1,116 @@
+package com.delinea.secrets.jenkins.wrapper.cred;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Supplier;
+
+import com.delinea.secrets.jenkins.client.SecretServerMetrics;
+
+/**
+ * Masks secrets in a build log with a {@link SecretMatcher} as the log is
+ * written, without waiting for the end of the line.
+ * <p>
+ * Everything that is known not to be part of a secret is written through at
+ * once. Only a tail that may be the start of a secret, which is shorter than
+ * the longest secret, is held back until the next write or until the stream
+ * is closed, so memory use is bounded by the window however long the lines
+ * are.
+ */
+class MaskingOutputStream extends FilterOutputStream {
+    private static final int DEFAULT_WINDOW = 8192;
+
+    private final Supplier<SecretMatcher> matcher;
+    private byte[] window = new byte[DEFAULT_WINDOW];
+    // the bytes held back from the previous write, at the start of the window
+    private int carry;
+
+    /**
+     * @param out     the log
+     * @param matcher supplies the current matcher, or {@code null} when there is
+     *                nothing to mask (yet)
+     */
+    MaskingOutputStream(final OutputStream out, final Supplier<SecretMatcher> matcher) {
+        super(out);
+        this.matcher = matcher;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(final byte[] b, final int off, final int len) throws IOException {
+        final SecretMatcher current = matcher.get();
+
+        if (current == null || current.isEmpty()) {
+            drain();
+            out.write(b, off, len);
+            return;
+        }
+        SecretServerMetrics.MASKED_BYTES.mark(len);
+        if (carry == 0) {
+            // nothing held back, so mask in place and only copy the new tail
+            hold(b, current.mask(b, off, len, false, out), off + len);
+            return;
+        }
+        ensureWindow(current.getMaxLength());
+        for (int done = 0; done < len;) {
+            final int chunk = Math.min(len - done, window.length - carry);
+
+            System.arraycopy(b, off + done, window, carry, chunk);
+            done += chunk;
+            final int end = carry + chunk;
+
+            carry = 0;
+            hold(window, current.mask(window, 0, end, false, out), end);
+        }
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        // the tail is kept: writing it could reveal the start of a secret
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        final SecretMatcher current = matcher.get();
+
+        if (carry > 0 && current != null && !current.isEmpty()) {
+            current.mask(window, 0, carry, true, out);
+            carry = 0;
+        } else {
+            drain();
+        }
+        super.close();
+    }
+
+    private void hold(final byte[] b, final int from, final int to) {
+        final int tail = to - from;
+
+        if (tail > 0) {
+            ensureWindow(tail);
+            System.arraycopy(b, from, window, 0, tail);
+        }
+        carry = tail;
+    }
+
+    private void drain() throws IOException {
+        if (carry > 0) {
+            out.write(window, 0, carry);
+            carry = 0;
+        }
+    }
+
+    private void ensureWindow(final int maxLength) {
+        // room for the longest tail and at least as many new bytes
+        if (window.length < 2 * maxLength) {
+            final byte[] larger = new byte[2 * maxLength];
+
+            System.arraycopy(window, 0, larger, 0, carry);
+            window = larger;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.delinea.secrets.jenkins.wrapper.cred;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.regex.Pattern;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import hudson.model.Run;
+
+/**
+ * The values to mask in the log of one build.
+ * <p>
+ * Values are deduplicated and kept in the order they were first added, which
+ * is their order of precedence when matching. Every new value bumps a version
+ * stamp, and the compiled {@link SecretMatcher} (or {@link Pattern}) is only
+ * rebuilt when the stamp has moved since it was last built.
+ * <p>
+ * When serialized, e.g. with the console log filter of a Pipeline, the values
+ * are written as a plain list, as the filter always wrote them: the filter may
+ * be sent to an agent, which can't decrypt with the controller's key.
+ */
+public final class MaskingRegistry implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // weak, so the registry goes away with the build once it's no longer loaded
+    private static final Map<Run<?, ?>, MaskingRegistry> REGISTRIES = new WeakHashMap<>();
+
+    private transient Set<String> values = new LinkedHashSet<>();
+    private transient int version;
+    private transient SecretMatcher matcher;
+    private transient Charset matcherCharset;
+    private transient int matcherVersion = -1;
+    private transient Pattern pattern;
+    private transient int patternVersion = -1;
+
+    /**
+     * @return the registry of this build, created on first use
+     */
+    public static MaskingRegistry forRun(@Nonnull final Run<?, ?> run) {
+        synchronized (REGISTRIES) {
+            return REGISTRIES.computeIfAbsent(run, r -> new MaskingRegistry());
+        }
+    }
+
+    MaskingRegistry() {
+    }
+
+    /**
+     * Adds a value to mask. {@code null}, empty and already added values are
+     * ignored.
+     */
+    public synchronized void add(@CheckForNull final String value) {
+        if (value != null && !value.isEmpty() && values.add(value)) {
+            version++;
+        }
+    }
+
+    public synchronized List<String> getValues() {
+        return new ArrayList<>(values);
+    }
+
+    /**
+     * @return the number of times the values have changed
+     */
+    public synchronized int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the matcher for the current values, or {@code null} if there are
+     *         none
+     */
+    @CheckForNull
+    public synchronized SecretMatcher getMatcher(@Nonnull final Charset charset) {
+        if (values.isEmpty()) {
+            return null;
+        }
+        if (matcher == null || matcherVersion != version || !charset.equals(matcherCharset)) {
+            matcher = new SecretMatcher(values, charset);
+            matcherCharset = charset;
+            matcherVersion = version;
+        }
+        return matcher;
+    }
+
+    /**
+     * @return the regular expression for the current values, or {@code null} if
+     *         there are none
+     */
+    @CheckForNull
+    public synchronized Pattern getPattern() {
+        if (values.isEmpty()) {
+            return null;
+        }
+        if (pattern == null || patternVersion != version) {
+            pattern = ServerConsoleLogFilter.getAggregateSecretPattern(new ArrayList<>(values));
+            patternVersion = version;
+        }
+        return pattern;
+    }
+
+    private synchronized void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(new ArrayList<>(values));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        values = new LinkedHashSet<>((List<String>) in.readObject());
+        matcherVersion = patternVersion = -1;
+    }
+
+    static MaskingRegistry of(final List<String> values) {
+        final MaskingRegistry registry = new MaskingRegistry();
+
+        values.forEach(registry::add);
+        return registry;
+    }
+}
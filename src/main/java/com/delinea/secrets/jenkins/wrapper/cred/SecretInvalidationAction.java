@@ -0,0 +1,119 @@
+package com.delinea.secrets.jenkins.wrapper.cred;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.verb.POST;
+
+import com.delinea.secrets.jenkins.client.SecretInvalidation;
+
+import hudson.Extension;
+import hudson.model.RootAction;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+import net.sf.json.JSONSerializer;
+
+/**
+ * Takes the events that Secret Server, or whatever rotates its passwords,
+ * sends when secrets change, and drops what the plugin holds of them, so that
+ * long cache times to live don't mean serving old passwords.
+ * <p>
+ * An administrator, e.g. with an API token, POSTs a JSON body to
+ * {@code /secret-server/invalidate}:
+ *
+ * <pre>
+ * curl -u admin:token -X POST -H 'Content-Type: application/json' \
+ *     -d '{"secretIds": [12, 34], "action": "refresh"}' \
+ *     http://localhost:8080/secret-server/invalidate
+ * </pre>
+ *
+ * {@code secretId} takes a single id, and the body may also be a bare array of
+ * ids. The {@code action} is {@code evict}, the default, or {@code refresh} to
+ * also fetch the evicted secrets again in the background. The response says
+ * how many cache entries were evicted and how many are being refreshed.
+ */
+@Extension
+public class SecretInvalidationAction implements RootAction {
+    static final String URL_NAME = "secret-server";
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Secret Server";
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    @POST
+    public void doInvalidate(final StaplerRequest request, final StaplerResponse response) throws IOException {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+
+        final Object body;
+        final List<Integer> secretIds = new ArrayList<>();
+        final boolean refresh;
+
+        try {
+            body = JSONSerializer.toJSON(IOUtils.toString(request.getInputStream(), StandardCharsets.UTF_8));
+            if (body instanceof JSONArray) {
+                addIds(secretIds, (JSONArray) body);
+                refresh = false;
+            } else {
+                final JSONObject event = (JSONObject) body;
+
+                if (event.has("secretId")) {
+                    secretIds.add(event.getInt("secretId"));
+                }
+                if (event.has("secretIds")) {
+                    addIds(secretIds, event.getJSONArray("secretIds"));
+                }
+                refresh = isRefresh(event.optString("action", "evict"));
+            }
+        } catch (final JSONException | ClassCastException e) {
+            throw HttpResponses.error(HttpServletResponse.SC_BAD_REQUEST, "Invalid event: " + e.getMessage());
+        }
+        if (secretIds.isEmpty()) {
+            throw HttpResponses.error(HttpServletResponse.SC_BAD_REQUEST, "No secretId or secretIds");
+        }
+        final SecretInvalidation.Result result = SecretInvalidation.invalidate(secretIds, refresh);
+        final JSONObject json = new JSONObject();
+
+        json.put("secretIds", secretIds);
+        json.put("evicted", result.getEvicted());
+        json.put("refreshing", result.getRefreshing());
+        response.setContentType("application/json;charset=UTF-8");
+        response.getWriter().write(json.toString());
+    }
+
+    private static void addIds(final List<Integer> secretIds, final JSONArray ids) {
+        for (int i = 0; i < ids.size(); i++) {
+            secretIds.add(ids.getInt(i));
+        }
+    }
+
+    private static boolean isRefresh(final String action) {
+        if ("refresh".equalsIgnoreCase(action)) {
+            return true;
+        }
+        if ("evict".equalsIgnoreCase(action)) {
+            return false;
+        }
+        throw new JSONException("Unknown action " + action);
+    }
+}
@@ -0,0 +1,254 @@
+package com.delinea.secrets.jenkins.wrapper.cred;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Masks every occurrence of a set of literal values in a byte sequence using
+ * an Aho-Corasick automaton, which is built once and then scans its input in
+ * a single pass without allocating.
+ * <p>
+ * The output is the same as replacing the regular expression alternation of
+ * the values, in the same order, with {@link #MASK}: the leftmost match wins
+ * and, of the values that match at the same position, the one that comes
+ * first wins. Values are matched as bytes in the given charset, which gives
+ * the same result as matching characters only for charsets in which no
+ * character's encoding appears inside another's, see
+ * {@link #supports(Charset)}.
+ */
+public final class SecretMatcher {
+    public static final String MASK = "****";
+
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final byte[] mask;
+    // the trie, with the edges of node n at [edgeStart[n], edgeStart[n + 1]) sorted by label
+    private final int[] edgeStart, edgeTarget;
+    private final byte[] edgeLabel;
+    private final int[] fail, depth;
+    // the index of the first value that ends at each node, or NONE
+    private final int[] priority;
+    // the nearest node on the failure chain of each node that ends a value, or -1
+    private final int[] dictionary;
+    private final int maxLength;
+
+    /**
+     * @param values  the values to mask, in order of precedence; {@code null}
+     *                and empty values are ignored
+     * @param charset the charset of the input
+     * @throws IllegalArgumentException if the charset is not
+     *                                  {@linkplain #supports(Charset) supported}
+     */
+    public SecretMatcher(final Collection<String> values, final Charset charset) {
+        if (!supports(charset)) {
+            throw new IllegalArgumentException("Unsupported charset " + charset);
+        }
+        final List<TreeMap<Byte, Integer>> children = new ArrayList<>();
+        final List<Integer> depths = new ArrayList<>(), priorities = new ArrayList<>();
+        int longest = 0, index = 0;
+
+        children.add(new TreeMap<>());
+        depths.add(0);
+        priorities.add(NONE);
+        for (final String value : values) {
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+            final byte[] bytes = value.getBytes(charset);
+            int node = 0;
+
+            for (final byte b : bytes) {
+                Integer next = children.get(node).get(b);
+
+                if (next == null) {
+                    next = children.size();
+                    children.add(new TreeMap<>());
+                    depths.add(depths.get(node) + 1);
+                    priorities.add(NONE);
+                    children.get(node).put(b, next);
+                }
+                node = next;
+            }
+            priorities.set(node, Math.min(priorities.get(node), index++));
+            longest = Math.max(longest, bytes.length);
+        }
+        final int nodes = children.size();
+        int edges = 0;
+
+        for (final TreeMap<Byte, Integer> edgesOfNode : children) {
+            edges += edgesOfNode.size();
+        }
+        this.mask = MASK.getBytes(charset);
+        this.maxLength = longest;
+        this.edgeStart = new int[nodes + 1];
+        this.edgeLabel = new byte[edges];
+        this.edgeTarget = new int[edges];
+        this.depth = new int[nodes];
+        this.priority = new int[nodes];
+        this.fail = new int[nodes];
+        this.dictionary = new int[nodes];
+        for (int n = 0, e = 0; n < nodes; n++) {
+            edgeStart[n] = e;
+            depth[n] = depths.get(n);
+            priority[n] = priorities.get(n);
+            // TreeMap<Byte, ...> iterates in signed order, which binary search below relies on
+            for (final Map.Entry<Byte, Integer> edge : children.get(n).entrySet()) {
+                edgeLabel[e] = edge.getKey();
+                edgeTarget[e++] = edge.getValue();
+            }
+        }
+        edgeStart[nodes] = edges;
+        // breadth-first, so that the failure link of a node is computed before its children's
+        final Deque<Integer> queue = new ArrayDeque<>();
+
+        dictionary[0] = -1;
+        for (int e = edgeStart[0]; e < edgeStart[1]; e++) {
+            fail[edgeTarget[e]] = 0;
+            dictionary[edgeTarget[e]] = -1;
+            queue.add(edgeTarget[e]);
+        }
+        while (!queue.isEmpty()) {
+            final int node = queue.poll();
+
+            for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+                final int child = edgeTarget[e];
+                final int f = next(fail[node], edgeLabel[e]);
+
+                fail[child] = f;
+                dictionary[child] = priority[f] != NONE ? f : dictionary[f];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * @return whether values can be matched as bytes in this charset, which is
+     *         the case for UTF-8 and single-byte charsets
+     */
+    public static boolean supports(final Charset charset) {
+        return StandardCharsets.UTF_8.equals(charset) || charset.newEncoder().maxBytesPerChar() == 1.0f;
+    }
+
+    /**
+     * @return {@code true} if there are no values to mask
+     */
+    public boolean isEmpty() {
+        return maxLength == 0;
+    }
+
+    /**
+     * @return the length in bytes of the longest value
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Writes {@code b[0, len)} to {@code out} with every value replaced by
+     * {@link #MASK}.
+     */
+    public void mask(final byte[] b, final int len, final OutputStream out) throws IOException {
+        mask(b, 0, len, true, out);
+    }
+
+    /**
+     * Writes {@code b[off, off + len)} to {@code out} with every value replaced
+     * by {@link #MASK}, except for a tail that may be the start of a value that
+     * continues in the next bytes, unless this is the end of the input.
+     * <p>
+     * The tail is shorter than {@link #getMaxLength()}. It should be
+     * passed again, followed by the next bytes.
+     *
+     * @return the offset of the tail that was not written, which is
+     *         {@code off + len} at the end of the input
+     */
+    public int mask(final byte[] b, final int off, final int len, final boolean endOfInput, final OutputStream out)
+            throws IOException {
+        final int limit = off + len;
+        int written = off, from = off;
+
+        while (from < limit) {
+            int state = 0, start = -1, end = 0, best = NONE;
+            int i = from;
+
+            for (; i < limit; i++) {
+                state = next(state, b[i]);
+                // every value that ends here; remember the leftmost, then first, one
+                for (int m = priority[state] != NONE ? state : dictionary[state]; m != -1; m = dictionary[m]) {
+                    final int s = i - depth[m] + 1;
+
+                    if (start == -1 || s < start || s == start && priority[m] < best) {
+                        start = s;
+                        end = i + 1;
+                        best = priority[m];
+                    }
+                }
+                // any later match starts at or after i + 1 - depth[state], so the
+                // remembered one can no longer be beaten once it starts before that
+                if (start != -1 && start < i + 1 - depth[state]) {
+                    break;
+                }
+            }
+            if (i == limit && !endOfInput) {
+                // a match that ends in the next bytes starts within the state, and less than a value's length back
+                final int tail = limit - Math.min(depth[state], Math.max(maxLength - 1, 0));
+
+                // unless the remembered match comes before that, the input may end in the middle of a
+                // value, or of a better match
+                if (start == -1 || start >= tail) {
+                    out.write(b, written, tail - written);
+                    return tail;
+                }
+            }
+            if (start == -1) {
+                break;
+            }
+            out.write(b, written, start - written);
+            out.write(mask);
+            written = from = end;
+        }
+        out.write(b, written, limit - written);
+        return limit;
+    }
+
+    private int next(int state, final byte label) {
+        while (true) {
+            final int target = find(state, label);
+
+            if (target != -1) {
+                return target;
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = fail[state];
+        }
+    }
+
+    private int find(final int node, final byte label) {
+        int low = edgeStart[node], high = edgeStart[node + 1] - 1;
+
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final byte midLabel = edgeLabel[mid];
+
+            if (midLabel < label) {
+                low = mid + 1;
+            } else if (midLabel > label) {
+                high = mid - 1;
+            } else {
+                return edgeTarget[mid];
+            }
+        }
+        return -1;
+    }
+}
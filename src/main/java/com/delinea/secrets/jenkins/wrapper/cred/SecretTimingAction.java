@@ -0,0 +1,185 @@
+package com.delinea.secrets.jenkins.wrapper.cred;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import com.delinea.secrets.jenkins.client.FetchTiming;
+
+import hudson.model.Api;
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+/**
+ * How long it took to get each secret of a build, and where it came from, so
+ * that slow set-ups can be blamed on Secret Server, or not. It never holds any
+ * secret data.
+ * <p>
+ * It is exported with the build, e.g. in {@code /job/x/1/api/json}, and on its
+ * own page.
+ */
+@ExportedBean
+public class SecretTimingAction implements RunAction2 {
+    private final List<SecretTiming> secrets = new ArrayList<>();
+    private long setupNanos;
+    private transient Run<?, ?> run;
+
+    /**
+     * @return the action of the build, added if it doesn't have one yet
+     */
+    static SecretTimingAction forRun(@Nonnull final Run<?, ?> run) {
+        synchronized (SecretTimingAction.class) {
+            SecretTimingAction action = run.getAction(SecretTimingAction.class);
+
+            if (action == null) {
+                action = new SecretTimingAction();
+                run.addAction(action);
+            }
+            return action;
+        }
+    }
+
+    synchronized void add(final long setupNanos, final List<SecretTiming> secrets) {
+        this.setupNanos += setupNanos;
+        this.secrets.addAll(secrets);
+    }
+
+    @Override
+    public void onAttached(final Run<?, ?> run) {
+        this.run = run;
+    }
+
+    @Override
+    public void onLoad(final Run<?, ?> run) {
+        this.run = run;
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    /**
+     * @return the time spent getting all the secrets, in milliseconds
+     */
+    @Exported
+    public synchronized double getSetupMillis() {
+        return millis(setupNanos);
+    }
+
+    @Exported
+    public synchronized List<SecretTiming> getSecrets() {
+        return Collections.unmodifiableList(new ArrayList<>(secrets));
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "clock.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Secret Server Timings";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "secretServerTimings";
+    }
+
+    static double millis(final long nanos) {
+        // to the microsecond
+        return TimeUnit.NANOSECONDS.toMicros(nanos) / 1000.0;
+    }
+
+    /**
+     * The timings of one secret.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static class SecretTiming {
+        private final int secretId;
+        private final String server;
+        private final FetchTiming.Source source;
+        private final long tokenNanos, fetchNanos, totalNanos, mappingNanos;
+        private final int mappedFields;
+
+        SecretTiming(final int secretId, final String server, final FetchTiming timing, final long mappingNanos,
+                final int mappedFields) {
+            this.secretId = secretId;
+            this.server = server;
+            this.source = timing.getSource();
+            this.tokenNanos = timing.getTokenNanos();
+            this.fetchNanos = timing.getFetchNanos();
+            this.totalNanos = timing.getTotalNanos();
+            this.mappingNanos = mappingNanos;
+            this.mappedFields = mappedFields;
+        }
+
+        @Exported
+        public int getSecretId() {
+            return secretId;
+        }
+
+        /**
+         * @return the API root URL of the Secret Server
+         */
+        @Exported
+        public String getServer() {
+            return server;
+        }
+
+        @Exported
+        public FetchTiming.Source getSource() {
+            return source;
+        }
+
+        /**
+         * @return the time spent getting an access token, in milliseconds
+         */
+        @Exported
+        public double getTokenMillis() {
+            return millis(tokenNanos);
+        }
+
+        /**
+         * @return the time spent in requests for the secret, in milliseconds
+         */
+        @Exported
+        public double getFetchMillis() {
+            return millis(fetchNanos);
+        }
+
+        /**
+         * @return the time spent mapping its fields to environment variables, in
+         *         milliseconds
+         */
+        @Exported
+        public double getMappingMillis() {
+            return millis(mappingNanos);
+        }
+
+        /**
+         * @return the time from asking for the secret to getting it, in
+         *         milliseconds, which includes looking it up in the cache and
+         *         waiting for a concurrent fetch
+         */
+        @Exported
+        public double getTotalMillis() {
+            return millis(totalNanos);
+        }
+
+        @Exported
+        public int getMappedFields() {
+            return mappedFields;
+        }
+    }
+}
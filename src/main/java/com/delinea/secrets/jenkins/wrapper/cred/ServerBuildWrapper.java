@@ -1,22 +1,30 @@
 package com.delinea.secrets.jenkins.wrapper.cred;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.BiConsumer;
 
-import com.thycotic.secrets.server.spring.Secret;
-import com.thycotic.secrets.server.spring.SecretServer;
-import com.thycotic.secrets.server.spring.SecretServerFactoryBean;
+import com.delinea.secrets.jenkins.client.AgentFetcher;
+import com.delinea.secrets.jenkins.client.FetchTiming;
+import com.delinea.secrets.jenkins.client.FieldDownload;
+import com.delinea.secrets.jenkins.client.FolderFetcher;
+import com.delinea.secrets.jenkins.client.SecretData;
+import com.delinea.secrets.jenkins.client.SecretFetchExecutor;
+import com.delinea.secrets.jenkins.client.SecretFetcher;
+import com.delinea.secrets.jenkins.client.SecretIndex;
+import com.delinea.secrets.jenkins.client.SecretServerClient;
+import com.delinea.secrets.jenkins.client.SecretServerClients;
+import com.delinea.secrets.jenkins.client.SecretServerMetrics;
 
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
-import org.springframework.context.annotation.AnnotationConfigApplicationContext;
-import org.springframework.core.env.MapPropertySource;
 
+import hudson.AbortException;
 import hudson.EnvVars;
 import hudson.Extension;
 import hudson.ExtensionList;
@@ -26,17 +34,21 @@ import hudson.console.ConsoleLogFilter;
 import hudson.model.AbstractProject;
 import hudson.model.Run;
 import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import hudson.slaves.WorkspaceList;
 import hudson.tasks.BuildWrapperDescriptor;
 import jenkins.tasks.SimpleBuildWrapper;
 
 public class ServerBuildWrapper extends SimpleBuildWrapper {
-    private static final String USERNAME_PROPERTY = "secret_server.oauth2.username";
-    private static final String PASSWORD_PROPERTY = "secret_server.oauth2.password";
-    private static final String API_ROOT_URL_PROPERTY = "secret_server.api_root_url";
-    private static final String OAUTH2_TOKEN_URL_PROPERTY = "secret_server.oauth2.token_url";
-
     private List<ServerSecret> secrets;
-    private List<String> valuesToMask = new ArrayList<>();
+    /**
+     * @deprecated the values to mask are kept per build in a
+     *             {@link MaskingRegistry}; this is only here so that job
+     *             configurations saved by older versions load, and it is
+     *             dropped when they are saved again
+     */
+    @Deprecated
+    private transient List<String> valuesToMask;
 
     @DataBoundConstructor
     public ServerBuildWrapper(final List<ServerSecret> secrets) {
@@ -54,25 +66,57 @@ public class ServerBuildWrapper extends SimpleBuildWrapper {
 
     @Override
     public ConsoleLogFilter createLoggerDecorator(final Run<?, ?> build) {
-    	return new ServerConsoleLogFilter(build.getCharset().name(), valuesToMask);
+    	return new ServerConsoleLogFilter(build.getCharset().name(), MaskingRegistry.forRun(build));
     }
 
     @Override
     public void setUp(final Context context, final Run<?, ?> build, final FilePath workspace, final Launcher launcher,
             final TaskListener listener, final EnvVars initialEnvironment) throws IOException, InterruptedException {
+        final long start = System.nanoTime();
+        final List<SecretTimingAction.SecretTiming> timings = new ArrayList<>();
+        final TempFileDisposer files = new TempFileDisposer();
+
+        try {
+            addSecrets(context, build, workspace, launcher, files, timings);
+        } catch (final IOException | InterruptedException | RuntimeException e) {
+            // the build won't tear down what it never set up
+            files.delete(workspace);
+            throw e;
+        } finally {
+            final long nanos = System.nanoTime() - start;
+
+            SecretServerMetrics.BUILD_SETUP.record(nanos);
+            SecretTimingAction.forRun(build).add(nanos, timings);
+        }
+        if (!files.isEmpty()) {
+            context.setDisposer(files);
+        }
+    }
+
+    private void addSecrets(final Context context, final Run<?, ?> build, final FilePath workspace,
+            final Launcher launcher, final TempFileDisposer files, final List<SecretTimingAction.SecretTiming> timings)
+            throws IOException, InterruptedException {
         final ServerConfiguration configuration = ExtensionList.lookupSingleton(ServerConfiguration.class);
-        final Map<String, Object> properties = new HashMap<>();
+        final MaskingRegistry masks = MaskingRegistry.forRun(build);
+        // fetch on the agent, unless the build runs on the controller
+        final VirtualChannel agent = configuration.isFetchOnAgent() && workspace != null && workspace.isRemote()
+                ? launcher.getChannel() : null;
+        final List<Callable<SecretData>> fetches = new ArrayList<>();
+        final List<AgentFetcher.Request> agentFetches = new ArrayList<>();
+        final List<ServerSecret> byId = new ArrayList<>(), folders = new ArrayList<>();
+        final List<SecretServerClient> clients = new ArrayList<>(), folderClients = new ArrayList<>();
+        final List<FetchTiming> fetchTimings = new ArrayList<>();
 
-        // these may be overridden by the secret below
-        properties.put(API_ROOT_URL_PROPERTY, configuration.getAPIUrl());
-        properties.put(OAUTH2_TOKEN_URL_PROPERTY, configuration.getTokenUrl());
-        secrets.forEach(serverSecret -> {
+        // resolve the credentials here, in the context of the build, rather than in the pool
+        for (final ServerSecret serverSecret : secrets) {
             final String overrideBaseURL = serverSecret.getBaseUrl();
             final String overrideUserCredentialId = serverSecret.getCredentialId();
+            // these may be overridden by the secret
+            String apiRootUrl = configuration.getAPIUrl(), tokenUrl = configuration.getTokenUrl();
 
             if (StringUtils.isNotBlank(overrideBaseURL)) {
-                properties.put(API_ROOT_URL_PROPERTY, overrideBaseURL + configuration.getApiPathUri());
-                properties.put(OAUTH2_TOKEN_URL_PROPERTY, overrideBaseURL + configuration.getTokenPathUri());
+                apiRootUrl = overrideBaseURL + configuration.getApiPathUri();
+                tokenUrl = overrideBaseURL + configuration.getTokenPathUri();
             }
 
             final UserCredentials credential;
@@ -84,31 +128,212 @@ public class ServerBuildWrapper extends SimpleBuildWrapper {
             }
             assert (credential != null); // see ServerSecret.DescriptorImpl.doCheckCredentialId
 
-            properties.put(USERNAME_PROPERTY, credential.getUsername());
-            properties.put(PASSWORD_PROPERTY, credential.getPassword().getPlainText());
-
-            final AnnotationConfigApplicationContext applicationContext = new AnnotationConfigApplicationContext();
-            // create a new Spring ApplicationContext using a Map as the PropertySource
-            applicationContext.getEnvironment().getPropertySources()
-                    .addLast(new MapPropertySource("properties", properties));
-            // Register the factoryBean from secrets-java-sdk
-            applicationContext.registerBean(SecretServerFactoryBean.class);
-            applicationContext.refresh();
-            // Fetch the secret
-            final Secret secret = applicationContext.getBean(SecretServer.class).getSecret(serverSecret.getId());
-            // Add each Secret Field Value with a corresponding mapping to the environment
-            secret.getFields().forEach(field -> {
-                serverSecret.getMappings().forEach(mapping -> {
-                    if (mapping.getField().equalsIgnoreCase(field.getFieldName()) || mapping.getField().equalsIgnoreCase(field.getSlug())) {
-                        // Prepend the the environment variable prefix
-                        context.env(StringUtils.trimToEmpty(configuration.getEnvironmentVariablePrefix())
-                                + mapping.getEnvironmentVariable(), field.getValue());
-                        valuesToMask.add(field.getValue());
-                    }
-                });
-            });
-            applicationContext.close();
+            // Reuse the client for this server and credential, if there is one
+            final SecretServerClient client = SecretServerClients.get(apiRootUrl, tokenUrl, credential.getId(),
+                    credential.getUsername(), credential.getPassword());
+
+            if (serverSecret.isFolderMode()) {
+                folders.add(serverSecret);
+                folderClients.add(client);
+                continue;
+            }
+            final FetchTiming timing = new FetchTiming();
+            final List<String> fields = fieldsOf(serverSecret);
+
+            byId.add(serverSecret);
+            clients.add(client);
+            fetchTimings.add(timing);
+            if (agent != null) {
+                // only a token and the id go to the agent
+                agentFetches.add(AgentFetcher.request(client, secretId(client, serverSecret), fields));
+            } else {
+                fetches.add(() -> SecretFetcher.fetch(client, secretId(client, serverSecret), fields, timing));
+            }
+        }
+        // Fetch the secrets concurrently; the results are in the same order as the secrets
+        final List<SecretData> secretData;
+
+        if (agent != null && !agentFetches.isEmpty()) {
+            secretData = new ArrayList<>();
+            for (final AgentFetcher.Result result : agent
+                    .call(new AgentFetcher(agentFetches, configuration.getFetchThreads()))) {
+                fetchTimings.set(secretData.size(), result.getTiming());
+                secretData.add(result.getSecret());
+            }
+        } else {
+            secretData = SecretFetchExecutor.invokeAll(fetches, configuration.getFetchThreads());
+        }
+
+        // Prepend the the environment variable prefix
+        final String prefix = StringUtils.trimToEmpty(configuration.getEnvironmentVariablePrefix());
+        final BiConsumer<String, String> environment = (environmentVariable, value) -> {
+            context.env(prefix + environmentVariable, value);
+            masks.add(value);
+        };
+        // the paths of files aren't secret
+        final BiConsumer<String, String> paths = (environmentVariable, path) -> context
+                .env(prefix + environmentVariable, path);
+
+        for (int i = 0; i < byId.size(); i++) {
+            final SecretData secret = secretData.get(i);
+
+            timings.add(addFields(secret, byId.get(i).getMappings(), environment, clients.get(i).getApiRootUrl(),
+                    fetchTimings.get(i)));
+            addFiles(clients.get(i), secret.getId(), byId.get(i).getMappings(), paths, workspace, agent, files);
+        }
+        // Then every secret in each folder, with its own names
+        for (int i = 0; i < folders.size(); i++) {
+            final ServerSecret folder = folders.get(i);
+            final SecretServerClient client = folderClients.get(i);
+
+            for (final FolderFetcher.Result result : FolderFetcher.fetch(client, folder.getFolder(),
+                    fieldsOf(folder), configuration.getFetchThreads())) {
+                final SecretData secret = result.getSecret();
+
+                timings.add(addFields(secret, folder.getMappings(),
+                        (environmentVariable, value) -> environment.accept(
+                                folder.getVariableName(secret.getId(), secret.getName(), environmentVariable), value),
+                        client.getApiRootUrl(), result.getTiming()));
+                addFiles(client, secret.getId(), folder.getMappings(),
+                        (environmentVariable, path) -> paths.accept(
+                                folder.getVariableName(secret.getId(), secret.getName(), environmentVariable), path),
+                        workspace, agent, files);
+            }
+        }
+    }
+
+    /**
+     * @return the id of the secret, looked up by its path if it has one
+     */
+    private static int secretId(final SecretServerClient client, final ServerSecret serverSecret)
+            throws IOException {
+        if (serverSecret.getPath() != null) {
+            return SecretIndex.get().resolve(client, serverSecret.getPath());
+        }
+        if (serverSecret.getId() == 0) {
+            throw new AbortException("A Secret Server secret needs an ID, a path or a folder");
+        }
+        return serverSecret.getId();
+    }
+
+    /**
+     * @return the names of the fields that the secret maps to environment
+     *         variables, which are the only ones that are needed; the fields
+     *         mapped to files are fetched on their own
+     */
+    private static List<String> fieldsOf(final ServerSecret serverSecret) {
+        final List<String> fields = new ArrayList<>();
+
+        for (final ServerSecret.Mapping mapping : serverSecret.getMappings()) {
+            if (!mapping.isFile()) {
+                fields.add(mapping.getField());
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Streams each field that is mapped to a file from Secret Server to a
+     * temporary file next to the workspace, on the agent if {@code agent} is
+     * set, and passes the environment variable and the path of the file to
+     * {@code paths}.
+     */
+    private static void addFiles(final SecretServerClient client, final int secretId,
+            final List<ServerSecret.Mapping> mappings, final BiConsumer<String, String> paths,
+            final FilePath workspace, final VirtualChannel agent, final TempFileDisposer files)
+            throws IOException, InterruptedException {
+        for (final ServerSecret.Mapping mapping : mappings) {
+            if (!mapping.isFile()) {
+                continue;
+            }
+            if (workspace == null) {
+                throw new AbortException("Mapping a secret field to a file needs a workspace");
+            }
+            final FilePath tempDir = WorkspaceList.tempDir(workspace);
+
+            tempDir.mkdirs();
+            final FilePath file = tempDir.createTempFile("secret", ".tmp");
+
+            files.add(file);
+            file.chmod(0600);
+            if (agent != null) {
+                file.act(FieldDownload.of(client, secretId, mapping.getField()));
+            } else {
+                try (OutputStream out = file.write()) {
+                    client.downloadField(secretId, mapping.getField(), out, new FetchTiming());
+                }
+            }
+            paths.accept(mapping.getEnvironmentVariable(), file.getRemote());
+        }
+    }
+
+    /**
+     * Adds each Secret Field Value with a corresponding mapping to the
+     * environment.
+     *
+     * @return the timings of the secret
+     */
+    private static SecretTimingAction.SecretTiming addFields(final SecretData secret,
+            final List<ServerSecret.Mapping> mappings, final BiConsumer<String, String> environment,
+            final String server, final FetchTiming timing) {
+        final long start = System.nanoTime();
+        final int[] mapped = { 0 };
+
+        mapFields(secret, mappings, (environmentVariable, value) -> {
+            environment.accept(environmentVariable, value);
+            mapped[0]++;
         });
+        return new SecretTimingAction.SecretTiming(secret.getId(), server, timing, System.nanoTime() - start,
+                mapped[0]);
+    }
+
+    /**
+     * Passes the environment variable and the value of each field of the
+     * secret that a mapping maps to {@code action}, in the order of the
+     * fields and then of the mappings.
+     */
+    static void mapFields(final SecretData secret, final List<ServerSecret.Mapping> mappings,
+            final BiConsumer<String, String> action) {
+        for (final SecretData.Field field : secret.getFields()) {
+            for (final ServerSecret.Mapping mapping : mappings) {
+                if (!mapping.isFile() && field.matches(mapping.getField())) {
+                    action.accept(mapping.getEnvironmentVariable(), field.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the temporary files of the fields mapped to files when the build
+     * ends.
+     */
+    private static final class TempFileDisposer extends Disposer {
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> files = new ArrayList<>();
+
+        void add(final FilePath file) {
+            files.add(file.getRemote());
+        }
+
+        boolean isEmpty() {
+            return files.isEmpty();
+        }
+
+        @Override
+        public void tearDown(final Run<?, ?> build, final FilePath workspace, final Launcher launcher,
+                final TaskListener listener) throws IOException, InterruptedException {
+            delete(workspace);
+        }
+
+        void delete(final FilePath workspace) throws IOException, InterruptedException {
+            if (files.isEmpty()) {
+                return;
+            }
+            for (final String file : files) {
+                new FilePath(workspace.getChannel(), file).delete();
+            }
+        }
     }
 
     @Extension
@@ -7,22 +7,30 @@ import java.net.URL;
 import javax.servlet.ServletException;
 
 import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
+import com.delinea.secrets.jenkins.client.HttpTransport;
+import com.delinea.secrets.jenkins.client.SecretCache;
+import com.delinea.secrets.jenkins.client.SecretCacheStore;
+import com.delinea.secrets.jenkins.client.SecretFetchExecutor;
+import com.delinea.secrets.jenkins.client.SecretFetcher;
+import com.delinea.secrets.jenkins.client.SecretIndex;
+import com.delinea.secrets.jenkins.client.SecretPreRefresher;
 
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.verb.POST;
 
 import hudson.Extension;
 import hudson.ExtensionList;
 import hudson.model.Item;
-import hudson.security.ACL;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import jenkins.model.GlobalConfiguration;
 import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
 
 @Extension
 @Symbol("secretServer")
@@ -30,6 +38,7 @@ public class ServerConfiguration extends GlobalConfiguration {
     public static final String DEFAULT_API_PATH_URI = "/api/v1";
     public static final String DEFAULT_TOKEN_PATH_URI = "/oauth2/token";
     public static final String DEFAULT_ENVIRONMENT_VARIABLE_PREFIX = "TSS_";
+    public static final int DEFAULT_CREDENTIAL_REFRESH_SECONDS = 300;
 
     /**
      * Calls hudson.ExtensionList#lookupSingleton(ServerConfiguration.class)
@@ -60,6 +69,20 @@ public class ServerConfiguration extends GlobalConfiguration {
 
     private String credentialId, baseUrl, apiPathUri = DEFAULT_API_PATH_URI, tknPathUri = DEFAULT_TOKEN_PATH_URI,
             environmentVariablePrefix = DEFAULT_ENVIRONMENT_VARIABLE_PREFIX;
+    private int fetchThreads = SecretFetchExecutor.DEFAULT_THREADS;
+    private boolean cacheEnabled, serveStale, persistCache;
+    private int cacheTtlSeconds = SecretCache.DEFAULT_TTL_SECONDS, cacheMaxEntries = SecretCache.DEFAULT_MAX_ENTRIES;
+    private int credentialRefreshSeconds = DEFAULT_CREDENTIAL_REFRESH_SECONDS;
+    private int maxStaleSeconds = SecretCache.DEFAULT_MAX_STALE_SECONDS;
+    private int maxConnectionsPerHost = HttpTransport.DEFAULT_MAX_CONNECTIONS_PER_HOST;
+    private int connectTimeoutSeconds = HttpTransport.DEFAULT_CONNECT_TIMEOUT_SECONDS;
+    private int readTimeoutSeconds = HttpTransport.DEFAULT_READ_TIMEOUT_SECONDS;
+    private boolean fetchMappedFieldsOnly;
+    private int maxMappedFields = SecretFetcher.DEFAULT_MAX_PROJECTED_FIELDS;
+    private int secretIndexTtlSeconds = SecretIndex.DEFAULT_TTL_SECONDS;
+    private boolean fetchOnAgent;
+    private boolean preRefresh;
+    private int preRefreshThreads = SecretPreRefresher.DEFAULT_THREADS;
 
     /**
      * Convenience method for {@link ServerBuildWrapper}
@@ -82,6 +105,28 @@ public class ServerConfiguration extends GlobalConfiguration {
 
     public ServerConfiguration() {
         load();
+        applyConfiguration();
+    }
+
+    /**
+     * Binds the form and then applies the configuration once, rather than from
+     * every setter, each of which saves it.
+     */
+    @Override
+    public boolean configure(final StaplerRequest req, final JSONObject json) throws FormException {
+        final boolean result = super.configure(req, json);
+
+        applyConfiguration();
+        return result;
+    }
+
+    private void applyConfiguration() {
+        SecretCache.get().configure(cacheEnabled, cacheTtlSeconds, cacheMaxEntries, serveStale, maxStaleSeconds);
+        SecretCacheStore.configure(persistCache);
+        SecretPreRefresher.configure(preRefresh, preRefreshThreads);
+        HttpTransport.configure(maxConnectionsPerHost, connectTimeoutSeconds, readTimeoutSeconds);
+        SecretFetcher.configure(fetchMappedFieldsOnly ? maxMappedFields : 0);
+        SecretIndex.get().configure(secretIndexTtlSeconds);
     }
 
     @POST
@@ -92,13 +137,112 @@ public class ServerConfiguration extends GlobalConfiguration {
         return checkBaseUrl(value);
     }
 
+    @POST
+    public FormValidation doCheckFetchThreads(@QueryParameter final String value) throws IOException, ServletException {
+        if (!Jenkins.get().hasPermission(Jenkins.ADMINISTER)) {
+            return FormValidation.error("You do not have permission to perform this action");
+        }
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    @POST
+    public FormValidation doCheckCacheTtlSeconds(@QueryParameter final String value)
+            throws IOException, ServletException {
+        if (!Jenkins.get().hasPermission(Jenkins.ADMINISTER)) {
+            return FormValidation.error("You do not have permission to perform this action");
+        }
+        return FormValidation.validateNonNegativeInteger(value);
+    }
+
+    @POST
+    public FormValidation doCheckCacheMaxEntries(@QueryParameter final String value)
+            throws IOException, ServletException {
+        if (!Jenkins.get().hasPermission(Jenkins.ADMINISTER)) {
+            return FormValidation.error("You do not have permission to perform this action");
+        }
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    @POST
+    public FormValidation doCheckMaxStaleSeconds(@QueryParameter final String value)
+            throws IOException, ServletException {
+        if (!Jenkins.get().hasPermission(Jenkins.ADMINISTER)) {
+            return FormValidation.error("You do not have permission to perform this action");
+        }
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    @POST
+    public FormValidation doCheckMaxConnectionsPerHost(@QueryParameter final String value)
+            throws IOException, ServletException {
+        if (!Jenkins.get().hasPermission(Jenkins.ADMINISTER)) {
+            return FormValidation.error("You do not have permission to perform this action");
+        }
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    @POST
+    public FormValidation doCheckConnectTimeoutSeconds(@QueryParameter final String value)
+            throws IOException, ServletException {
+        if (!Jenkins.get().hasPermission(Jenkins.ADMINISTER)) {
+            return FormValidation.error("You do not have permission to perform this action");
+        }
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    @POST
+    public FormValidation doCheckReadTimeoutSeconds(@QueryParameter final String value)
+            throws IOException, ServletException {
+        if (!Jenkins.get().hasPermission(Jenkins.ADMINISTER)) {
+            return FormValidation.error("You do not have permission to perform this action");
+        }
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    @POST
+    public FormValidation doCheckMaxMappedFields(@QueryParameter final String value)
+            throws IOException, ServletException {
+        if (!Jenkins.get().hasPermission(Jenkins.ADMINISTER)) {
+            return FormValidation.error("You do not have permission to perform this action");
+        }
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    @POST
+    public FormValidation doCheckPreRefreshThreads(@QueryParameter final String value)
+            throws IOException, ServletException {
+        if (!Jenkins.get().hasPermission(Jenkins.ADMINISTER)) {
+            return FormValidation.error("You do not have permission to perform this action");
+        }
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    @POST
+    public FormValidation doCheckSecretIndexTtlSeconds(@QueryParameter final String value)
+            throws IOException, ServletException {
+        if (!Jenkins.get().hasPermission(Jenkins.ADMINISTER)) {
+            return FormValidation.error("You do not have permission to perform this action");
+        }
+        return FormValidation.validateNonNegativeInteger(value);
+    }
+
+    @POST
+    public FormValidation doCheckCredentialRefreshSeconds(@QueryParameter final String value)
+            throws IOException, ServletException {
+        if (!Jenkins.get().hasPermission(Jenkins.ADMINISTER)) {
+            return FormValidation.error("You do not have permission to perform this action");
+        }
+        return FormValidation.validatePositiveInteger(value);
+    }
+
     @POST
     public ListBoxModel doFillCredentialIdItems(@AncestorInPath final Item item) {
         if (item == null && !Jenkins.get().hasPermission(Jenkins.ADMINISTER) ||
                 item != null && !item.hasPermission(Item.CONFIGURE)) {
             return new StandardListBoxModel();
         }
-        return new StandardListBoxModel().includeEmptyValue().includeAs(ACL.SYSTEM, item, UserCredentials.class);
+        return new StandardListBoxModel().includeEmptyValue()
+                .withAll(UserCredentialsIndex.forContext(item).values());
     }
 
     public String getCredentialId() {
@@ -150,4 +294,178 @@ public class ServerConfiguration extends GlobalConfiguration {
         this.tknPathUri = StringUtils.strip(tokenPathUri);
         save();
     }
+
+    public int getFetchThreads() {
+        return fetchThreads;
+    }
+
+    @DataBoundSetter
+    public void setFetchThreads(final int fetchThreads) {
+        this.fetchThreads = fetchThreads > 0 ? fetchThreads : SecretFetchExecutor.DEFAULT_THREADS;
+        save();
+    }
+
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    @DataBoundSetter
+    public void setCacheEnabled(final boolean cacheEnabled) {
+        this.cacheEnabled = cacheEnabled;
+        save();
+    }
+
+    public int getCacheTtlSeconds() {
+        return cacheTtlSeconds;
+    }
+
+    @DataBoundSetter
+    public void setCacheTtlSeconds(final int cacheTtlSeconds) {
+        this.cacheTtlSeconds = Math.max(0, cacheTtlSeconds);
+        save();
+    }
+
+    public int getCacheMaxEntries() {
+        return cacheMaxEntries;
+    }
+
+    @DataBoundSetter
+    public void setCacheMaxEntries(final int cacheMaxEntries) {
+        this.cacheMaxEntries = cacheMaxEntries > 0 ? cacheMaxEntries : SecretCache.DEFAULT_MAX_ENTRIES;
+        save();
+    }
+
+    public boolean isServeStale() {
+        return serveStale;
+    }
+
+    @DataBoundSetter
+    public void setServeStale(final boolean serveStale) {
+        this.serveStale = serveStale;
+        save();
+    }
+
+    public int getMaxStaleSeconds() {
+        return maxStaleSeconds;
+    }
+
+    @DataBoundSetter
+    public void setMaxStaleSeconds(final int maxStaleSeconds) {
+        this.maxStaleSeconds = maxStaleSeconds > 0 ? maxStaleSeconds : SecretCache.DEFAULT_MAX_STALE_SECONDS;
+        save();
+    }
+
+    public boolean isPersistCache() {
+        return persistCache;
+    }
+
+    @DataBoundSetter
+    public void setPersistCache(final boolean persistCache) {
+        this.persistCache = persistCache;
+        save();
+    }
+
+    public boolean isPreRefresh() {
+        return preRefresh;
+    }
+
+    @DataBoundSetter
+    public void setPreRefresh(final boolean preRefresh) {
+        this.preRefresh = preRefresh;
+        save();
+    }
+
+    public int getPreRefreshThreads() {
+        return preRefreshThreads;
+    }
+
+    @DataBoundSetter
+    public void setPreRefreshThreads(final int preRefreshThreads) {
+        this.preRefreshThreads = preRefreshThreads > 0 ? preRefreshThreads : SecretPreRefresher.DEFAULT_THREADS;
+        save();
+    }
+
+    public int getCredentialRefreshSeconds() {
+        return credentialRefreshSeconds;
+    }
+
+    @DataBoundSetter
+    public void setCredentialRefreshSeconds(final int credentialRefreshSeconds) {
+        this.credentialRefreshSeconds = credentialRefreshSeconds > 0 ? credentialRefreshSeconds
+                : DEFAULT_CREDENTIAL_REFRESH_SECONDS;
+        save();
+    }
+
+    public boolean isFetchMappedFieldsOnly() {
+        return fetchMappedFieldsOnly;
+    }
+
+    @DataBoundSetter
+    public void setFetchMappedFieldsOnly(final boolean fetchMappedFieldsOnly) {
+        this.fetchMappedFieldsOnly = fetchMappedFieldsOnly;
+        save();
+    }
+
+    public int getMaxMappedFields() {
+        return maxMappedFields;
+    }
+
+    @DataBoundSetter
+    public void setMaxMappedFields(final int maxMappedFields) {
+        this.maxMappedFields = maxMappedFields > 0 ? maxMappedFields : SecretFetcher.DEFAULT_MAX_PROJECTED_FIELDS;
+        save();
+    }
+
+    public boolean isFetchOnAgent() {
+        return fetchOnAgent;
+    }
+
+    @DataBoundSetter
+    public void setFetchOnAgent(final boolean fetchOnAgent) {
+        this.fetchOnAgent = fetchOnAgent;
+        save();
+    }
+
+    public int getSecretIndexTtlSeconds() {
+        return secretIndexTtlSeconds;
+    }
+
+    @DataBoundSetter
+    public void setSecretIndexTtlSeconds(final int secretIndexTtlSeconds) {
+        this.secretIndexTtlSeconds = Math.max(0, secretIndexTtlSeconds);
+        save();
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    @DataBoundSetter
+    public void setMaxConnectionsPerHost(final int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost > 0 ? maxConnectionsPerHost
+                : HttpTransport.DEFAULT_MAX_CONNECTIONS_PER_HOST;
+        save();
+    }
+
+    public int getConnectTimeoutSeconds() {
+        return connectTimeoutSeconds;
+    }
+
+    @DataBoundSetter
+    public void setConnectTimeoutSeconds(final int connectTimeoutSeconds) {
+        this.connectTimeoutSeconds = connectTimeoutSeconds > 0 ? connectTimeoutSeconds
+                : HttpTransport.DEFAULT_CONNECT_TIMEOUT_SECONDS;
+        save();
+    }
+
+    public int getReadTimeoutSeconds() {
+        return readTimeoutSeconds;
+    }
+
+    @DataBoundSetter
+    public void setReadTimeoutSeconds(final int readTimeoutSeconds) {
+        this.readTimeoutSeconds = readTimeoutSeconds > 0 ? readTimeoutSeconds
+                : HttpTransport.DEFAULT_READ_TIMEOUT_SECONDS;
+        save();
+    }
 }
@@ -6,10 +6,11 @@ import hudson.model.Run;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 import org.jenkinsci.plugins.credentialsbinding.masking.SecretPatterns;
@@ -18,24 +19,38 @@ import java.util.regex.PatternSyntaxException;
 // borrowed from https://github.com/jenkinsci/azure-keyvault-plugin/blob/master/src/main/java/org/jenkinsci/plugins/azurekeyvaultplugin/MaskingConsoleLogFilter.java
 public class ServerConsoleLogFilter extends ConsoleLogFilter implements Serializable {
     private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = Logger.getLogger(ServerConsoleLogFilter.class.getName());
     private final String charsetName;
-    private final List<String> valuesToMask;
+    private MaskingRegistry registry;
+    /**
+     * @deprecated replaced by {@link #registry}; only read from filters that
+     *             were serialized by older versions
+     */
+    @Deprecated
+    private List<String> valuesToMask;
 
-    public ServerConsoleLogFilter(final String charsetName, final List<String> valuesToMask) {
+    public ServerConsoleLogFilter(final String charsetName, final MaskingRegistry registry) {
         this.charsetName = charsetName;
-        this.valuesToMask = valuesToMask;
+        this.registry = registry;
+    }
+
+    private Object readResolve() {
+        if (registry == null) {
+            registry = MaskingRegistry.of(valuesToMask != null ? valuesToMask : new ArrayList<>());
+            valuesToMask = null;
+        }
+        return this;
     }
 
     @Override
     public OutputStream decorateLogger(Run run, final OutputStream logger) throws IOException, InterruptedException {
-        return new SecretPatterns.MaskingOutputStream(logger, () -> {
-            List<String> values = valuesToMask.stream().filter(Objects::nonNull).collect(Collectors.toList());
-            if (!values.isEmpty()) {
-                return ServerConsoleLogFilter.getAggregateSecretPattern(values);
-            } else {
-                return null;
-            }
-        },charsetName);
+        final Charset charset = Charset.forName(charsetName);
+
+        if (SecretMatcher.supports(charset)) {
+            return new MaskingOutputStream(logger, () -> registry.getMatcher(charset));
+        }
+        // values can't be matched as bytes in this charset so fall back to the regular expression
+        return new SecretPatterns.MaskingOutputStream(logger, registry::getPattern, charsetName);
     }
 
     public static Pattern getAggregateSecretPattern(List<String> patterns) {
@@ -47,12 +62,13 @@ public class ServerConsoleLogFilter extends ConsoleLogFilter implements Serializ
         try {
             return Pattern.compile(aggregatedPattern);
         } catch (PatternSyntaxException e) {
-            System.err.println("Error compiling pattern: " + e.getMessage());
+            // not the exception, whose message quotes the pattern and so the secrets
+            LOGGER.log(Level.WARNING, "Error compiling the masking pattern at index {0}", e.getIndex());
             return null;
         }
     }
 
-    private static String escapeSpecialCharacters(String input) {
+    static String escapeSpecialCharacters(String input) {
         String[] specialChars = {"\\", "^", "$", ".", "|", "?", "*", "+", "(", ")", "[", "]", "{", "}", "~", "@", "#", "%", "&", "_", "-", "=", "!", "/"};
         for (String specialChar : specialChars) {
             input = input.replace(specialChar, "\\" + specialChar);
@@ -2,6 +2,7 @@ package com.delinea.secrets.jenkins.wrapper.cred;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Locale;
 import java.util.regex.Pattern;
 
 import javax.servlet.ServletException;
@@ -20,34 +21,53 @@ import hudson.Extension;
 import hudson.model.AbstractDescribableImpl;
 import hudson.model.Descriptor;
 import hudson.model.Item;
-import hudson.security.ACL;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import jenkins.model.Jenkins;
 
 /**
- * A Delinea SecretServer Secret, identified by it's id, and a list of mappings
- * from the secret's data fields to environment variables.
+ * A Delinea SecretServer Secret, identified by it's id or path, and a list of
+ * mappings from the secret's data fields to environment variables.
+ * <p>
+ * Alternatively, all the secrets in a folder, identified by its id or path, in
+ * which case the name of each environment variable is made from a template,
+ * the name of the secret and the variable of the mapping.
  */
 public class ServerSecret extends AbstractDescribableImpl<ServerSecret> {
-    private final int id;
+    private int id;
     private final List<Mapping> mappings;
 
+    /**
+     * @return the id of the secret, or 0 if it is identified by its path or
+     *         if it is a folder
+     */
     public int getId() {
         return id;
     }
 
+    @DataBoundSetter
+    public void setId(final int id) {
+        this.id = id;
+    }
+
     public List<Mapping> getMappings() {
         return mappings;
     }
 
     @DataBoundConstructor
+    public ServerSecret(final List<Mapping> mappings) {
+        this.mappings = mappings;
+    }
+
     public ServerSecret(final int id, final List<Mapping> mappings) {
+        this(mappings);
         this.id = id;
-        this.mappings = mappings;
     }
 
-    private String baseUrl, credentialId;
+    public static final String DEFAULT_VARIABLE_TEMPLATE = "{SECRET}_{VARIABLE}";
+
+    private String baseUrl, credentialId, path, folder;
+    private String variableTemplate = DEFAULT_VARIABLE_TEMPLATE;
 
     public String getBaseUrl() {
         return baseUrl;
@@ -67,8 +87,73 @@ public class ServerSecret extends AbstractDescribableImpl<ServerSecret> {
         this.credentialId = credentialId;
     }
 
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @param path the name of the secret, with the path of its folder, which is
+     *             used instead of the id
+     */
+    @DataBoundSetter
+    public void setPath(final String path) {
+        this.path = StringUtils.trimToNull(path);
+    }
+
+    public String getFolder() {
+        return folder;
+    }
+
+    /**
+     * @param folder the id or the path of a folder, all the secrets in which are
+     *               used instead of the secret with the id
+     */
+    @DataBoundSetter
+    public void setFolder(final String folder) {
+        this.folder = StringUtils.trimToNull(folder);
+    }
+
+    public boolean isFolderMode() {
+        return folder != null;
+    }
+
+    public String getVariableTemplate() {
+        return variableTemplate;
+    }
+
+    @DataBoundSetter
+    public void setVariableTemplate(final String variableTemplate) {
+        this.variableTemplate = StringUtils.isBlank(variableTemplate) ? DEFAULT_VARIABLE_TEMPLATE
+                : variableTemplate.trim();
+    }
+
+    /**
+     * Names the environment variable of a mapping of a secret in the folder:
+     * {@code {SECRET}} in the template is replaced by the name of the secret,
+     * in upper case with anything but letters, digits and underscores replaced
+     * by underscores, {@code {ID}} by its id, and {@code {VARIABLE}} by the
+     * environment variable of the mapping.
+     */
+    public String getVariableName(final int secretId, final String secretName, final String variable) {
+        final String name = StringUtils.defaultString(secretName).toUpperCase(Locale.ENGLISH)
+                .replaceAll("[^A-Z0-9_]", "_");
+
+        return StringUtils.replaceEach(StringUtils.defaultIfEmpty(variableTemplate, DEFAULT_VARIABLE_TEMPLATE),
+                new String[] { "{SECRET}", "{ID}", "{VARIABLE}" },
+                new String[] { name, String.valueOf(secretId), variable });
+    }
+
+    private Object readResolve() {
+        // configurations saved before there were folders have no template
+        if (variableTemplate == null) {
+            variableTemplate = DEFAULT_VARIABLE_TEMPLATE;
+        }
+        return this;
+    }
+
     public static class Mapping extends AbstractDescribableImpl<Mapping> {
         private final String environmentVariable, field;
+        private boolean file;
 
         public String getEnvironmentVariable() {
             return environmentVariable;
@@ -84,6 +169,20 @@ public class ServerSecret extends AbstractDescribableImpl<ServerSecret> {
             this.field = field;
         }
 
+        /**
+         * @return whether the value of the field is written to a temporary file
+         *         in the workspace, whose path is the value of the environment
+         *         variable, rather than being the value itself
+         */
+        public boolean isFile() {
+            return file;
+        }
+
+        @DataBoundSetter
+        public void setFile(final boolean file) {
+            this.file = file;
+        }
+
         @Extension
         public static final class DescriptorImpl extends Descriptor<Mapping> {
             private static final String NAME_PATTERN = "[a-zA-Z_-][a-zA-Z0-9 ]*";
@@ -125,6 +224,10 @@ public class ServerSecret extends AbstractDescribableImpl<ServerSecret> {
             return "Secret Server Secret";
         }
 
+        public String getDefaultVariableTemplate() {
+            return DEFAULT_VARIABLE_TEMPLATE;
+        }
+
         @POST
         public FormValidation doCheckCredentialId(@QueryParameter final String value)
                 throws IOException, ServletException {
@@ -142,20 +245,69 @@ public class ServerSecret extends AbstractDescribableImpl<ServerSecret> {
                     item != null && !item.hasPermission(Item.CONFIGURE)) {
                 return new StandardListBoxModel();
             }
-            return new StandardListBoxModel().includeAs(ACL.SYSTEM, item, UserCredentials.class).includeEmptyValue();
+            return new StandardListBoxModel().withAll(UserCredentialsIndex.forContext(item).values())
+                    .includeEmptyValue();
         }
 
         @POST
-        public FormValidation doCheckId(@QueryParameter final String value) throws IOException, ServletException {
-            try {
-                if (!Jenkins.get().hasPermission(Jenkins.ADMINISTER)) {
-                    return FormValidation.error("You do not have permission to perform this action");
+        public FormValidation doCheckId(@QueryParameter final String value, @QueryParameter final String path,
+                @QueryParameter final String folder) throws IOException, ServletException {
+            return checkIdentification(value, path, folder);
+        }
+
+        @POST
+        public FormValidation doCheckPath(@QueryParameter final String id, @QueryParameter final String value,
+                @QueryParameter final String folder) throws IOException, ServletException {
+            return checkIdentification(id, value, folder);
+        }
+
+        @POST
+        public FormValidation doCheckFolder(@QueryParameter final String id, @QueryParameter final String path,
+                @QueryParameter final String value) throws IOException, ServletException {
+            return checkIdentification(id, path, value);
+        }
+
+        /**
+         * Checks that the secret is identified by exactly one of an id, a path
+         * and a folder; an empty id, or 0, is no id.
+         */
+        private static FormValidation checkIdentification(final String id, final String path, final String folder) {
+            if (!Jenkins.get().hasPermission(Jenkins.ADMINISTER)) {
+                return FormValidation.error("You do not have permission to perform this action");
+            }
+            int count = 0;
+
+            if (StringUtils.isNotBlank(id)) {
+                try {
+                    if (Integer.parseInt(id.trim()) != 0) {
+                        count++;
+                    }
+                } catch (final NumberFormatException e) {
+                    return FormValidation.error("Secret ID is an integer");
                 }
-                Integer.parseInt(value);
-                return FormValidation.ok();
-            } catch (final NumberFormatException e) {
-                return FormValidation.error("Secret ID is an integer");
             }
+            if (StringUtils.isNotBlank(path)) {
+                count++;
+            }
+            if (StringUtils.isNotBlank(folder)) {
+                count++;
+            }
+            if (count == 0)
+                return FormValidation.error("Set a Secret ID, a Secret Path or a Folder");
+            if (count > 1)
+                return FormValidation.error("Set only one of the Secret ID, the Secret Path and the Folder");
+            return FormValidation.ok();
+        }
+
+        @POST
+        public FormValidation doCheckVariableTemplate(@QueryParameter final String value)
+                throws IOException, ServletException {
+            if (!Jenkins.get().hasPermission(Jenkins.ADMINISTER)) {
+                return FormValidation.error("You do not have permission to perform this action");
+            }
+            if (StringUtils.isBlank(value) || value.contains("{SECRET}") || value.contains("{ID}"))
+                return FormValidation.ok();
+            return FormValidation.error("The template must contain {SECRET} or {ID}");
         }
 
         @POST
@@ -1,30 +1,25 @@
 package com.delinea.secrets.jenkins.wrapper.cred;
 
-import java.util.Collections;
-
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import org.kohsuke.stapler.DataBoundConstructor;
 
-import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.CredentialsScope;
 import com.cloudbees.plugins.credentials.common.StandardCredentials;
 import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
-import com.cloudbees.plugins.credentials.matchers.IdMatcher;
 
 import hudson.Extension;
 import hudson.model.Item;
-import hudson.model.ItemGroup;
-import hudson.security.ACL;
 import jenkins.model.Jenkins;
 
 public class UserCredentials extends UsernamePasswordCredentialsImpl implements StandardCredentials {
     private static final long serialVersionUID = 1L;
 
     /**
-     * The credentials of this type with this credentialId that apply to this item
+     * The credentials of this type with this credentialId that apply to this item,
+     * from the {@link UserCredentialsIndex}
      *
      * @param credentialId  the id of the credential
      * @param item         the optional item (context)
@@ -35,16 +30,13 @@ public class UserCredentials extends UsernamePasswordCredentialsImpl implements
 			// If we're inside a folder (item is non-null), check for the read permission at
 			// the folder level.
 			if (item.hasPermission(Item.READ)) {
-				return CredentialsProvider
-						.lookupCredentials(UserCredentials.class, item, ACL.SYSTEM, Collections.emptyList()).stream()
-						.filter(cred -> cred.getId().equals(credentialId)).findFirst().orElse(null);
+				return UserCredentialsIndex.forContext(item).get(credentialId);
 			}
 		} else {
 			// If there's no item (global context), check for global permission to view
 			// credentials.
 			if (Jenkins.get().hasPermission(CredentialsProvider.VIEW)) {
-				return CredentialsMatchers.firstOrNull(CredentialsProvider.lookupCredentials(UserCredentials.class,
-						(ItemGroup<?>) null, ACL.SYSTEM, Collections.emptyList()), new IdMatcher(credentialId));
+				return UserCredentialsIndex.forContext(null).get(credentialId);
 			}
 		}
 
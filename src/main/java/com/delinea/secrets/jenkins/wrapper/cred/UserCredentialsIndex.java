@@ -0,0 +1,191 @@
+package com.delinea.secrets.jenkins.wrapper.cred;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.cloudbees.plugins.credentials.Credentials;
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.CredentialsStore;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.domains.Domain;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Saveable;
+import hudson.model.User;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import jenkins.model.Jenkins;
+
+/**
+ * The {@link UserCredentials} that apply to each context, i.e. an item or
+ * Jenkins itself, by id, so that resolving one is a hash lookup rather than a
+ * credentials lookup and a scan of its results.
+ * <p>
+ * A context is indexed the first time it is used, along with a fingerprint of
+ * the credentials stores that apply to it: the identities of the stores and of
+ * the credentials in them, which change whenever a credential is added,
+ * updated or removed, or the stores are reloaded from disk. The fingerprint is
+ * checked on the first use a second after the last check, or after a store
+ * may have been saved or items were loaded, moved or deleted, and the context
+ * is indexed again only if it changed.
+ */
+public final class UserCredentialsIndex {
+    // the least recently used contexts are dropped beyond this
+    private static final int MAX_CONTEXTS = 1000;
+    // how long an index is used before its fingerprint is checked, unless a store may have changed since
+    private static final long CHECK_INTERVAL_MILLIS = 1000;
+
+    private static final Map<String, Context> CONTEXTS = new LinkedHashMap<String, Context>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Context> eldest) {
+            return size() > MAX_CONTEXTS;
+        }
+    };
+    // incremented whenever a store may have changed, so that every index is checked on its next use
+    private static long generation;
+
+    private UserCredentialsIndex() {
+    }
+
+    /**
+     * The credentials that apply to the context, as the system sees them; the
+     * caller checks the permissions.
+     *
+     * @param item the item, or {@code null} for Jenkins itself
+     * @return the credentials by id; where ids clash, the one that a
+     *         credentials lookup lists first, i.e. the nearest
+     */
+    @Nonnull
+    public static Map<String, UserCredentials> forContext(@Nullable final Item item) {
+        final String name = item == null ? "" : item.getFullName();
+        final long now = System.currentTimeMillis();
+        final Context cached;
+        final long lookedUpAt;
+
+        synchronized (CONTEXTS) {
+            cached = CONTEXTS.get(name);
+            if (cached != null && cached.generation == generation
+                    && now - cached.checkedAt < CHECK_INTERVAL_MILLIS) {
+                return cached.credentials;
+            }
+            lookedUpAt = generation;
+        }
+        // taken before the lookup, so that a change during it makes the next check look up again
+        final long fingerprint = fingerprint(item);
+        final Map<String, UserCredentials> credentials = cached != null && cached.fingerprint == fingerprint
+                ? cached.credentials
+                : lookUp(item);
+
+        synchronized (CONTEXTS) {
+            if (generation == lookedUpAt) {
+                CONTEXTS.put(name, new Context(credentials, fingerprint, lookedUpAt, now));
+            }
+        }
+        return credentials;
+    }
+
+    /**
+     * Makes every index check its fingerprint on its next use.
+     */
+    public static void invalidate() {
+        synchronized (CONTEXTS) {
+            generation++;
+        }
+    }
+
+    private static Map<String, UserCredentials> lookUp(@Nullable final Item item) {
+        final Map<String, UserCredentials> credentials = new LinkedHashMap<>();
+
+        for (final UserCredentials credential : item == null
+                ? CredentialsProvider.lookupCredentials(UserCredentials.class, (ItemGroup<?>) null, ACL.SYSTEM,
+                        Collections.emptyList())
+                : CredentialsProvider.lookupCredentials(UserCredentials.class, item, ACL.SYSTEM,
+                        Collections.emptyList())) {
+            credentials.putIfAbsent(credential.getId(), credential);
+        }
+        return Collections.unmodifiableMap(credentials);
+    }
+
+    /**
+     * A hash of the identities of the stores that apply to the context and of
+     * all the credentials in them. Credentials are immutable, so editing one
+     * replaces it. No credentials are looked up or copied, so it is cheap.
+     */
+    private static long fingerprint(@Nullable final Item item) {
+        long fingerprint = 1;
+
+        try (ACLContext ignored = ACL.as(ACL.SYSTEM)) {
+            for (final CredentialsStore store : CredentialsProvider.lookupStores(item == null ? Jenkins.get() : item)) {
+                fingerprint = 31 * fingerprint + System.identityHashCode(store);
+                for (final Domain domain : store.getDomains()) {
+                    for (final Credentials credential : store.getCredentials(domain)) {
+                        fingerprint = 31 * fingerprint + System.identityHashCode(credential);
+                    }
+                }
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * The index of a context.
+     */
+    private static final class Context {
+        private final Map<String, UserCredentials> credentials;
+        private final long fingerprint, generation, checkedAt;
+
+        Context(final Map<String, UserCredentials> credentials, final long fingerprint, final long generation,
+                final long checkedAt) {
+            this.credentials = credentials;
+            this.fingerprint = fingerprint;
+            this.generation = generation;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    /**
+     * Has the indexes checked when a credentials store may have been saved.
+     */
+    @Extension
+    public static final class SaveListener extends SaveableListener {
+        @Override
+        public void onChange(final Saveable o, final XmlFile file) {
+            // folders and users hold their credentials stores; jobs and builds, which are saved all the time, don't
+            if (o instanceof SystemCredentialsProvider || o instanceof ItemGroup || o instanceof User) {
+                invalidate();
+            }
+        }
+    }
+
+    /**
+     * Has the indexes checked when items are loaded, moved or deleted.
+     */
+    @Extension
+    public static final class ItemListenerImpl extends ItemListener {
+        @Override
+        public void onLoaded() {
+            invalidate();
+        }
+
+        @Override
+        public void onLocationChanged(final Item item, final String oldFullName, final String newFullName) {
+            invalidate();
+        }
+
+        @Override
+        public void onDeleted(final Item item) {
+            invalidate();
+        }
+    }
+}
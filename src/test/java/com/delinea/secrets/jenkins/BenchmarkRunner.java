@@ -0,0 +1,34 @@
+package com.delinea.secrets.jenkins;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks of the plugin, i.e. the classes named
+ * {@code *Benchmark}, with {@code mvn test -Dbenchmark}. They need neither
+ * Jenkins nor a network.
+ * <p>
+ * Scores are operations per second; the {@code gc.alloc.rate.norm} rows are
+ * bytes allocated per operation. The results are also written to
+ * {@code target/jmh-result.json}. Append {@code -Dbenchmark.include=<regex>}
+ * to run some of the benchmarks only.
+ */
+public class BenchmarkRunner {
+    @Test
+    public void runBenchmarks() throws Exception {
+        final ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(System.getProperty("benchmark.include", getClass().getPackage().getName() + ".*Benchmark"))
+                .mode(Mode.Throughput)
+                .addProfiler(GCProfiler.class)
+                .shouldFailOnError(true)
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-result.json");
+
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,524 @@
+package com.delinea.secrets.jenkins;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.commons.lang.StringUtils;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import net.sf.json.util.JSONUtils;
+
+/**
+ * An in-process stand-in for the parts of the Secret Server REST API that the
+ * plugin uses, on an ephemeral port of the loopback interface:
+ * <ul>
+ * <li>{@code POST /oauth2/token}, with the password and refresh token
+ * grants</li>
+ * <li>{@code GET /api/v1/secrets/{id}}, which needs a bearer token that it
+ * issued and that has not expired</li>
+ * <li>{@code GET /api/v1/secrets/{id}/fields/{slug}}, which needs one too and
+ * answers with the value of the field as a JSON string, or with the content
+ * of a file attachment as is</li>
+ * <li>{@code GET /api/v1/secrets?filter.folderId=&filter.searchText=&skip=&take=},
+ * a page of the secrets in a folder, or any folder, with that text in their
+ * name</li>
+ * <li>{@code GET /api/v1/folders?filter.searchText=}, the folders with that
+ * text in their name</li>
+ * </ul>
+ * Every response can be delayed, a share of them can be replaced by an
+ * error, and the lifetime of the tokens it issues is configurable. It counts
+ * the requests to each endpoint.
+ */
+public final class FakeSecretServer implements Closeable {
+    /** The names of the endpoints, as counted by {@link #getRequestCount(String)}. */
+    public static final String TOKEN = "token", SECRET = "secret", FIELD = "field", SEARCH = "search",
+            FOLDERS = "folders";
+
+    private final String username, password;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "FakeSecretServer");
+
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Integer, JSONObject> secrets = new ConcurrentHashMap<>();
+    // secret id -> folder id
+    private final Map<Integer, Integer> secretFolders = new ConcurrentHashMap<>();
+    // "{secret id}/{slug}" -> the content of a file attachment
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    // folder id -> path
+    private final Map<Integer, String> folders = new ConcurrentHashMap<>();
+    // token -> when it expires
+    private final Map<String, Long> accessTokens = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> refreshTokens = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> requests = new ConcurrentHashMap<>();
+    private volatile long latencyMillis;
+    private volatile int tokenLifetimeSeconds = 1200;
+    private volatile double errorRate;
+    private volatile int errorStatus = 500;
+
+    /**
+     * Starts a server that grants tokens for this username and password.
+     */
+    public FakeSecretServer(final String username, final String password) throws IOException {
+        this.username = username;
+        this.password = password;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/oauth2/token", handler(TOKEN, this::token));
+        final HttpHandler secret = handler(SECRET, this::secret), field = handler(FIELD, this::field),
+                search = handler(SEARCH, this::search);
+
+        server.createContext("/api/v1/secrets", exchange -> {
+            final String path = exchange.getRequestURI().getPath();
+
+            (path.contains("/fields/") ? field : path.startsWith("/api/v1/secrets/") ? secret : search)
+                    .handle(exchange);
+        });
+        server.createContext("/api/v1/folders", handler(FOLDERS, this::folders));
+        server.start();
+    }
+
+    /**
+     * @return the base URL of the server, e.g. {@code http://127.0.0.1:12345}
+     */
+    public String getUrl() {
+        return "http://" + server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * Adds, or replaces, a secret. The slug of each field is its name in lower
+     * case with spaces replaced by dashes.
+     *
+     * @param fields the names and values of the fields, in order
+     */
+    public FakeSecretServer addSecret(final int id, final String name, final Map<String, String> fields) {
+        final JSONArray items = new JSONArray();
+
+        for (final Map.Entry<String, String> field : fields.entrySet()) {
+            final JSONObject item = new JSONObject();
+
+            item.put("fieldName", field.getKey());
+            item.put("slug", field.getKey().toLowerCase().replace(' ', '-'));
+            item.put("itemValue", field.getValue());
+            item.put("isFile", false);
+            items.add(item);
+        }
+        final JSONObject secret = new JSONObject();
+
+        secret.put("id", id);
+        secret.put("name", name);
+        secret.put("items", items);
+        secrets.put(id, secret);
+        return this;
+    }
+
+    /**
+     * Adds, or replaces, a secret in a folder.
+     *
+     * @see #addSecret(int, String, Map)
+     */
+    public FakeSecretServer addSecret(final int id, final String name, final int folderId,
+            final Map<String, String> fields) {
+        addSecret(id, name, fields);
+        secretFolders.put(id, folderId);
+        return this;
+    }
+
+    /**
+     * Adds, or replaces, a file attachment of a secret, with the same slug as
+     * the other fields.
+     */
+    public FakeSecretServer addFile(final int id, final String name, final byte[] content) {
+        final String slug = name.toLowerCase().replace(' ', '-');
+        final JSONObject item = new JSONObject();
+
+        item.put("fieldName", name);
+        item.put("slug", slug);
+        item.put("itemValue", "");
+        item.put("isFile", true);
+        secrets.get(id).getJSONArray("items").add(item);
+        files.put(id + "/" + slug, content);
+        return this;
+    }
+
+    /**
+     * Removes a secret, as if it had been deleted or the credential's access
+     * to it revoked.
+     */
+    public FakeSecretServer removeSecret(final int id) {
+        secrets.remove(id);
+        secretFolders.remove(id);
+        return this;
+    }
+
+    /**
+     * Adds, or replaces, a folder.
+     *
+     * @param path its path, e.g. {@code \Jenkins\Production}
+     */
+    public FakeSecretServer addFolder(final int id, final String path) {
+        folders.put(id, path);
+        return this;
+    }
+
+    /**
+     * Delays every response by this long.
+     */
+    public FakeSecretServer setLatency(final long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    /**
+     * Makes the tokens issued from now on expire after this long.
+     */
+    public FakeSecretServer setTokenLifetime(final int tokenLifetimeSeconds) {
+        this.tokenLifetimeSeconds = tokenLifetimeSeconds;
+        return this;
+    }
+
+    /**
+     * Answers this share of all requests, between 0 and 1, with this HTTP
+     * status instead.
+     */
+    public FakeSecretServer setErrors(final double errorRate, final int errorStatus) {
+        this.errorRate = errorRate;
+        this.errorStatus = errorStatus;
+        return this;
+    }
+
+    /**
+     * Makes every token issued so far invalid, as if they had been revoked.
+     */
+    public void revokeTokens() {
+        accessTokens.clear();
+        refreshTokens.clear();
+    }
+
+    public long getRequestCount(final String endpoint) {
+        final LongAdder count = requests.get(endpoint);
+
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * @return the number of requests to each endpoint so far
+     */
+    public Map<String, Long> getRequestCounts() {
+        final Map<String, Long> counts = new TreeMap<>();
+
+        requests.forEach((endpoint, count) -> counts.put(endpoint, count.sum()));
+        return counts;
+    }
+
+    public void resetRequestCounts() {
+        requests.clear();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Handles a request to one endpoint.
+     */
+    private interface Endpoint {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    private HttpHandler handler(final String name, final Endpoint endpoint) {
+        return exchange -> {
+            try {
+                requests.computeIfAbsent(name, n -> new LongAdder()).increment();
+                if (latencyMillis > 0) {
+                    TimeUnit.MILLISECONDS.sleep(latencyMillis);
+                }
+                if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                    error(exchange, errorStatus, "Injected error");
+                } else {
+                    endpoint.handle(exchange);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    private void token(final HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            error(exchange, 405, "Method not allowed");
+            return;
+        }
+        final Map<String, String> form = parseForm(read(exchange.getRequestBody()));
+        final String grantType = form.get("grant_type");
+
+        if ("password".equals(grantType)) {
+            if (!username.equals(form.get("username")) || !password.equals(form.get("password"))) {
+                oauthError(exchange, "invalid_grant");
+                return;
+            }
+        } else if ("refresh_token".equals(grantType)) {
+            if (form.get("refresh_token") == null || refreshTokens.remove(form.get("refresh_token")) == null) {
+                oauthError(exchange, "invalid_grant");
+                return;
+            }
+        } else {
+            oauthError(exchange, "unsupported_grant_type");
+            return;
+        }
+        final int lifetime = tokenLifetimeSeconds;
+        final String accessToken = UUID.randomUUID().toString(), refreshToken = UUID.randomUUID().toString();
+        final JSONObject response = new JSONObject();
+
+        accessTokens.put(accessToken, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(lifetime));
+        refreshTokens.put(refreshToken, Boolean.TRUE);
+        response.put("access_token", accessToken);
+        response.put("token_type", "bearer");
+        response.put("expires_in", lifetime);
+        response.put("refresh_token", refreshToken);
+        json(exchange, 200, response);
+    }
+
+    private void secret(final HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            error(exchange, 405, "Method not allowed");
+            return;
+        }
+        if (!authorized(exchange)) {
+            error(exchange, 401, "Authentication failed");
+            return;
+        }
+        final String id = exchange.getRequestURI().getPath().substring("/api/v1/secrets/".length());
+        final JSONObject secret;
+
+        try {
+            secret = secrets.get(Integer.parseInt(id));
+        } catch (final NumberFormatException e) {
+            error(exchange, 400, "Invalid secret id " + id);
+            return;
+        }
+        if (secret == null) {
+            error(exchange, 404, "Secret " + id + " not found");
+            return;
+        }
+        json(exchange, 200, secret);
+    }
+
+    private void field(final HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            error(exchange, 405, "Method not allowed");
+            return;
+        }
+        if (!authorized(exchange)) {
+            error(exchange, 401, "Authentication failed");
+            return;
+        }
+        // {id}/fields/{slug}
+        final String[] path = exchange.getRequestURI().getPath().substring("/api/v1/secrets/".length())
+                .split("/fields/", 2);
+        final JSONObject secret;
+
+        try {
+            secret = secrets.get(Integer.parseInt(path[0]));
+        } catch (final NumberFormatException e) {
+            error(exchange, 400, "Invalid secret id " + path[0]);
+            return;
+        }
+        if (secret == null) {
+            error(exchange, 404, "Secret " + path[0] + " not found");
+            return;
+        }
+        final byte[] file = files.get(path[0] + "/" + path[1]);
+
+        if (file != null) {
+            exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+            exchange.sendResponseHeaders(200, file.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(file);
+            }
+            return;
+        }
+        for (final Object item : secret.getJSONArray("items")) {
+            if (path[1].equals(((JSONObject) item).getString("slug"))) {
+                send(exchange, 200, JSONUtils.quote(((JSONObject) item).getString("itemValue")));
+                return;
+            }
+        }
+        error(exchange, 404, "Field " + path[1] + " not found");
+    }
+
+    private void search(final HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            error(exchange, 405, "Method not allowed");
+            return;
+        }
+        if (!authorized(exchange)) {
+            error(exchange, 401, "Authentication failed");
+            return;
+        }
+        final Map<String, String> query = parseForm(StringUtils.defaultString(exchange.getRequestURI().getRawQuery()));
+        final JSONArray records = new JSONArray();
+        final String text = query.getOrDefault("filter.searchText", "").toLowerCase();
+        final Integer folderId;
+        final int skip, take;
+
+        try {
+            folderId = query.containsKey("filter.folderId") ? Integer.valueOf(query.get("filter.folderId")) : null;
+            skip = Integer.parseInt(query.getOrDefault("skip", "0"));
+            take = Integer.parseInt(query.getOrDefault("take", "10"));
+        } catch (final NumberFormatException e) {
+            error(exchange, 400, "Invalid query " + exchange.getRequestURI().getRawQuery());
+            return;
+        }
+        new TreeMap<>(secrets).forEach((id, secret) -> {
+            if ((folderId == null || folderId.equals(secretFolders.get(id)))
+                    && secret.getString("name").toLowerCase().contains(text)) {
+                final JSONObject record = new JSONObject();
+
+                record.put("id", id);
+                record.put("name", secret.get("name"));
+                record.put("folderId", secretFolders.getOrDefault(id, -1));
+                records.add(record);
+            }
+        });
+        json(exchange, 200, page(records, skip, take));
+    }
+
+    private void folders(final HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            error(exchange, 405, "Method not allowed");
+            return;
+        }
+        if (!authorized(exchange)) {
+            error(exchange, 401, "Authentication failed");
+            return;
+        }
+        final Map<String, String> query = parseForm(StringUtils.defaultString(exchange.getRequestURI().getRawQuery()));
+        final String text = query.getOrDefault("filter.searchText", "").toLowerCase();
+        final JSONArray records = new JSONArray();
+
+        new TreeMap<>(folders).forEach((id, path) -> {
+            final String name = path.substring(path.lastIndexOf('\\') + 1);
+
+            if (name.toLowerCase().contains(text)) {
+                final JSONObject record = new JSONObject();
+
+                record.put("id", id);
+                record.put("folderName", name);
+                record.put("folderPath", path);
+                records.add(record);
+            }
+        });
+        json(exchange, 200, page(records, Integer.parseInt(query.getOrDefault("skip", "0")),
+                Integer.parseInt(query.getOrDefault("take", "10"))));
+    }
+
+    private static JSONObject page(final JSONArray records, final int skip, final int take) {
+        final JSONObject page = new JSONObject();
+        final JSONArray taken = new JSONArray();
+
+        for (int i = skip; i < Math.min(records.size(), skip + take); i++) {
+            taken.add(records.get(i));
+        }
+        page.put("records", taken);
+        page.put("skip", skip);
+        page.put("take", take);
+        page.put("total", records.size());
+        page.put("hasNext", skip + take < records.size());
+        return page;
+    }
+
+    private boolean authorized(final HttpExchange exchange) {
+        final String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return false;
+        }
+        final Long expiresAt = accessTokens.get(authorization.substring("Bearer ".length()));
+
+        return expiresAt != null && System.currentTimeMillis() < expiresAt;
+    }
+
+    private static void oauthError(final HttpExchange exchange, final String error) throws IOException {
+        final JSONObject response = new JSONObject();
+
+        response.put("error", error);
+        json(exchange, 400, response);
+    }
+
+    private static void error(final HttpExchange exchange, final int status, final String message)
+            throws IOException {
+        final JSONObject response = new JSONObject();
+
+        response.put("message", message);
+        json(exchange, status, response);
+    }
+
+    private static void json(final HttpExchange exchange, final int status, final JSONObject json)
+            throws IOException {
+        send(exchange, status, json.toString());
+    }
+
+    private static void send(final HttpExchange exchange, final int status, final String json) throws IOException {
+        final byte[] body = json.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> parseForm(final String body) throws UnsupportedEncodingException {
+        final Map<String, String> form = new HashMap<>();
+
+        for (final String pair : body.split("&")) {
+            final int equals = pair.indexOf('=');
+
+            if (equals > 0) {
+                form.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                        URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+            }
+        }
+        return form;
+    }
+
+    private static String read(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+
+        for (int n; (n = in.read(buffer)) != -1;) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,223 @@
+package com.delinea.secrets.jenkins;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.delinea.secrets.jenkins.client.SecretCache;
+import com.delinea.secrets.jenkins.global.cred.SecretServerCredentials;
+import com.delinea.secrets.jenkins.wrapper.cred.ServerBuildWrapper;
+import com.delinea.secrets.jenkins.wrapper.cred.ServerConfiguration;
+import com.delinea.secrets.jenkins.wrapper.cred.ServerSecret;
+import com.delinea.secrets.jenkins.wrapper.cred.UserCredentials;
+
+import hudson.EnvVars;
+import hudson.model.FreeStyleBuild;
+import hudson.model.TaskListener;
+import jenkins.tasks.SimpleBuildWrapper;
+
+/**
+ * Puts the plugin under concurrent load against a {@link FakeSecretServer}
+ * and reports the latency percentiles, the requests it made to each endpoint
+ * and the heap of the controller.
+ * <p>
+ * It is skipped unless run with {@code -DloadTest}, e.g.
+ * {@code mvn test -Dtest=SecretServerLoadTest -DloadTest -DloadTest.threads=64}.
+ * The other properties are {@code loadTest.iterations} (per thread),
+ * {@code loadTest.secrets}, {@code loadTest.fields} (per secret),
+ * {@code loadTest.latencyMillis}, {@code loadTest.tokenLifetimeSeconds},
+ * {@code loadTest.errorRate} and {@code loadTest.cache}.
+ */
+public class SecretServerLoadTest {
+    private static final Logger LOGGER = Logger.getLogger(SecretServerLoadTest.class.getName());
+
+    private static final String CREDENTIAL_ID = "secret-server", USERNAME = "jenkins", PASSWORD = "password";
+
+    private static final int THREADS = Integer.getInteger("loadTest.threads", 32);
+    private static final int ITERATIONS = Integer.getInteger("loadTest.iterations", 20);
+    private static final int SECRETS = Integer.getInteger("loadTest.secrets", 10);
+    private static final int FIELDS = Integer.getInteger("loadTest.fields", 10);
+    private static final long LATENCY_MILLIS = Long.getLong("loadTest.latencyMillis", 20);
+    private static final int TOKEN_LIFETIME_SECONDS = Integer.getInteger("loadTest.tokenLifetimeSeconds", 1200);
+    private static final double ERROR_RATE = Double.parseDouble(System.getProperty("loadTest.errorRate", "0"));
+    private static final boolean CACHE = Boolean.getBoolean("loadTest.cache");
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private FakeSecretServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue("Run with -DloadTest", Boolean.getBoolean("loadTest"));
+        server = new FakeSecretServer(USERNAME, PASSWORD).setLatency(LATENCY_MILLIS)
+                .setTokenLifetime(TOKEN_LIFETIME_SECONDS).setErrors(ERROR_RATE, 503);
+        for (int id = 1; id <= SECRETS; id++) {
+            final Map<String, String> fields = new LinkedHashMap<>();
+
+            fields.put("Username", "user-" + id);
+            fields.put("Password", "password-" + id);
+            for (int field = 2; field < FIELDS; field++) {
+                fields.put("Field " + field, "value-" + id + "-" + field);
+            }
+            server.addSecret(id, "Secret " + id, fields);
+        }
+        SystemCredentialsProvider.getInstance().getCredentials()
+                .add(new UserCredentials(CredentialsScope.GLOBAL, CREDENTIAL_ID, null, USERNAME, PASSWORD));
+        SystemCredentialsProvider.getInstance().save();
+
+        final ServerConfiguration configuration = ServerConfiguration.get();
+
+        configuration.setBaseUrl(server.getUrl());
+        configuration.setCredentialId(CREDENTIAL_ID);
+        configuration.setCacheEnabled(CACHE);
+        // the setters only save it; submitting the form applies it
+        SecretCache.get().configure(CACHE, configuration.getCacheTtlSeconds(), configuration.getCacheMaxEntries(),
+                configuration.isServeStale(), configuration.getMaxStaleSeconds());
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+        SecretCache.get().configure(false, SecretCache.DEFAULT_TTL_SECONDS, SecretCache.DEFAULT_MAX_ENTRIES, false,
+                SecretCache.DEFAULT_MAX_STALE_SECONDS);
+    }
+
+    @Test
+    public void buildWrapperSetUp() throws Exception {
+        final List<ServerSecret> secrets = new ArrayList<>();
+
+        for (int id = 1; id <= SECRETS; id++) {
+            secrets.add(new ServerSecret(id, Arrays.asList(new ServerSecret.Mapping("USERNAME_" + id, "username"),
+                    new ServerSecret.Mapping("PASSWORD_" + id, "password"))));
+        }
+        final ServerBuildWrapper wrapper = new ServerBuildWrapper(secrets);
+        final FreeStyleBuild build = j.buildAndAssertSuccess(j.createFreeStyleProject());
+
+        run("ServerBuildWrapper.setUp", () -> {
+            final SimpleBuildWrapper.Context context = new SimpleBuildWrapper.Context();
+
+            wrapper.setUp(context, build, null, null, TaskListener.NULL, new EnvVars());
+            assertEquals(2 * SECRETS, context.getEnv().size());
+            return null;
+        });
+    }
+
+    @Test
+    public void secretServerCredentialsLookup() throws Exception {
+        final List<SecretServerCredentials> credentials = new ArrayList<>();
+
+        for (int id = 1; id <= SECRETS; id++) {
+            credentials.add(new SecretServerCredentials(CredentialsScope.GLOBAL, "vault-" + id, null, server.getUrl(),
+                    CREDENTIAL_ID, String.valueOf(id), "username", "password"));
+        }
+        final AtomicInteger next = new AtomicInteger();
+
+        run("SecretServerCredentials lookup", () -> {
+            final SecretServerCredentials credential = credentials.get(next.getAndIncrement() % credentials.size());
+
+            credential.getUsername();
+            credential.getPassword();
+            return null;
+        });
+    }
+
+    private void run(final String name, final Callable<Void> operation) throws Exception {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final List<Future<long[]>> workers = new ArrayList<>();
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+
+        server.resetRequestCounts();
+        System.gc();
+        final long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        final long start = System.nanoTime();
+
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                workers.add(executor.submit(() -> {
+                    final long[] latencies = new long[ITERATIONS];
+
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        final long begin = System.nanoTime();
+
+                        try {
+                            operation.call();
+                        } catch (final Exception | AssertionError e) {
+                            if (failures.getAndIncrement() == 0) {
+                                firstFailure.set(e);
+                                LOGGER.log(Level.WARNING, name + " failed", e);
+                            }
+                        }
+                        latencies[i] = System.nanoTime() - begin;
+                    }
+                    return latencies;
+                }));
+            }
+            final List<Long> all = new ArrayList<>(THREADS * ITERATIONS);
+
+            for (final Future<long[]> worker : workers) {
+                for (final long latency : worker.get()) {
+                    all.add(latency);
+                }
+            }
+            final long elapsed = System.nanoTime() - start;
+            final long heapPeak = memory.getHeapMemoryUsage().getUsed();
+
+            System.gc();
+            final long heapAfter = memory.getHeapMemoryUsage().getUsed();
+
+            Collections.sort(all);
+            System.out.printf("%s: %d threads x %d iterations, %d secrets, %d ms latency, cache %s%n", name, THREADS,
+                    ITERATIONS, SECRETS, LATENCY_MILLIS, CACHE ? "on" : "off");
+            System.out.printf("  latency p50 %.1f ms, p99 %.1f ms, max %.1f ms%n", millis(percentile(all, 0.50)),
+                    millis(percentile(all, 0.99)), millis(all.get(all.size() - 1)));
+            System.out.printf("  %.1f operations/s, %d failures%n",
+                    all.size() / (elapsed / (double) TimeUnit.SECONDS.toNanos(1)), failures.get());
+            System.out.printf("  requests %s%n", server.getRequestCounts());
+            System.out.printf("  heap before %d MiB, at the end %d MiB, after GC %d MiB%n", heapBefore >> 20,
+                    heapPeak >> 20, heapAfter >> 20);
+        } finally {
+            executor.shutdownNow();
+        }
+        if (ERROR_RATE == 0) {
+            assertEquals(name + " failed, first with " + firstFailure.get(), 0, failures.get());
+        }
+    }
+
+    private static long percentile(final List<Long> sorted, final double quantile) {
+        return sorted.get(Math.max(0, (int) Math.ceil(quantile * sorted.size()) - 1));
+    }
+
+    private static double millis(final long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,181 @@
+package com.delinea.secrets.jenkins.client;
+
+import static com.delinea.secrets.jenkins.client.SecretCacheTest.key;
+import static com.delinea.secrets.jenkins.client.SecretCacheTest.secret;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class SecretCacheStoreTest {
+    // the header of the file, see SecretCacheStore
+    private static final int MAGIC = 0x54535343, FORMAT_VERSION = 1;
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private final SecretCache cache = SecretCache.get();
+    private Path file;
+
+    @Before
+    public void setUp() {
+        file = new File(j.jenkins.getRootDir(), "secret-server-cache.bin").toPath();
+        cache.configure(true, 300, 10, false, 0);
+        SecretCacheStore.configure(true);
+    }
+
+    @After
+    public void tearDown() {
+        SecretCacheStore.configure(false);
+        cache.configure(false, SecretCache.DEFAULT_TTL_SECONDS, SecretCache.DEFAULT_MAX_ENTRIES, false,
+                SecretCache.DEFAULT_MAX_STALE_SECONDS);
+    }
+
+    @Test
+    public void restoresTheCacheAfterARestart() throws IOException {
+        final SecretCache.Key fields = new SecretCache.Key(key(2).getApiRootUrl(), 2, "credential",
+                Arrays.asList("username", "password"));
+
+        cache.put(key(1), secret(1));
+        cache.put(fields, secret(2));
+        SecretCacheStore.save();
+
+        final byte[] saved = Files.readAllBytes(file);
+
+        assertFalse("values are kept encrypted",
+                new String(saved, StandardCharsets.ISO_8859_1).contains("password-1"));
+        restart(saved, 300);
+
+        final SecretCache.Hit hit = cache.lookup(key(1));
+
+        assertNotNull(hit);
+        assertTrue(hit.isFresh());
+        assertEquals("secret 1", hit.getSecret().getName());
+        assertEquals("user-1", hit.getSecret().getField("username").getValue());
+        assertEquals("password-1", hit.getSecret().getField("password").getValue());
+        assertEquals("password-2", cache.lookup(fields).getSecret().getField("password").getValue());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void doesNotRestoreExpiredEntries() throws IOException, InterruptedException {
+        cache.put(key(1), secret(1));
+        SecretCacheStore.save();
+        Thread.sleep(10);
+        restart(Files.readAllBytes(file), 0);
+
+        assertNull(cache.lookup(key(1)));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void onlySavesWhenTheCacheChanged() throws IOException {
+        cache.put(key(1), secret(1));
+        SecretCacheStore.save();
+        Files.delete(file);
+        SecretCacheStore.save();
+        assertFalse(Files.exists(file));
+
+        cache.put(key(2), secret(2));
+        SecretCacheStore.save();
+        assertTrue(Files.exists(file));
+    }
+
+    @Test
+    public void ignoresAFileOfAnotherFormat() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION + 1);
+            out.writeInt(1);
+        }
+        restart(bytes.toByteArray(), 300);
+
+        assertNull(cache.lookup(key(1)));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void startsEmptyFromACorruptFile() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(1);
+            // the key
+            writeString(out, key(1).getApiRootUrl());
+            out.writeInt(1);
+            writeString(out, "credential");
+            out.writeInt(-1);
+            // the entry, with -1 fields, which is only valid for the fields of a key
+            out.writeInt(1);
+            writeString(out, "secret 1");
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(-1);
+        }
+        restart(bytes.toByteArray(), 300);
+
+        assertNull(cache.lookup(key(1)));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void deletesTheFileWhenDisabled() {
+        cache.put(key(1), secret(1));
+        SecretCacheStore.save();
+        assertTrue(Files.exists(file));
+
+        SecretCacheStore.configure(false);
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void savesWhenSecretsAreInvalidated() throws IOException {
+        cache.put(key(1), secret(1));
+        cache.put(key(2), secret(2));
+        SecretCacheStore.save();
+        SecretInvalidation.invalidate(Collections.singleton(1), false);
+        restart(Files.readAllBytes(file), 300);
+
+        assertNull(cache.lookup(key(1)));
+        assertNotNull(cache.lookup(key(2)));
+    }
+
+    /**
+     * Empties the cache and forgets that the file was read, as a restart does,
+     * with the file holding these bytes.
+     */
+    private void restart(final byte[] saved, final int ttlSeconds) throws IOException {
+        SecretCacheStore.configure(false);
+        cache.configure(false, ttlSeconds, 10, false, 0);
+        Files.write(file, saved);
+        cache.configure(true, ttlSeconds, 10, false, 0);
+        SecretCacheStore.configure(true);
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
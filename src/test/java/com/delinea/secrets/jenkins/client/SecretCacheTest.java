@@ -0,0 +1,194 @@
+package com.delinea.secrets.jenkins.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+/**
+ * Field values are encrypted with the Jenkins confidential key, hence the
+ * {@link JenkinsRule}.
+ */
+public class SecretCacheTest {
+    private static final String API = "https://secretserver.example.com/api/v1";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private final SecretCache cache = SecretCache.get();
+
+    @Before
+    public void setUp() {
+        SecretCacheStore.configure(false);
+        enable(300, 10);
+    }
+
+    @After
+    public void tearDown() {
+        cache.configure(false, SecretCache.DEFAULT_TTL_SECONDS, SecretCache.DEFAULT_MAX_ENTRIES, false,
+                SecretCache.DEFAULT_MAX_STALE_SECONDS);
+    }
+
+    @Test
+    public void cachesNothingWhenDisabled() {
+        cache.configure(false, 300, 10, false, 3600);
+        cache.put(key(1), secret(1));
+
+        assertFalse(cache.isActive());
+        assertNull(cache.lookup(key(1)));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void servesFreshSecretsWithinTheTimeToLive() {
+        cache.put(key(1), secret(1));
+
+        final SecretCache.Hit hit = cache.lookup(key(1));
+
+        assertNotNull(hit);
+        assertTrue(hit.isFresh());
+        assertEquals(1, hit.getSecret().getId());
+        assertEquals("secret 1", hit.getSecret().getName());
+        assertEquals("user-1", hit.getSecret().getField("username").getValue());
+        assertEquals("password-1", hit.getSecret().getField("password").getValue());
+        assertNull(cache.lookup(key(2)));
+    }
+
+    @Test
+    public void keepsSecretsPerServerAndCredential() {
+        cache.put(key(1), secret(1));
+
+        assertNull(cache.lookup(new SecretCache.Key("https://other.example.com/api/v1", 1, "credential")));
+        assertNull(cache.lookup(new SecretCache.Key(API, 1, "other credential")));
+    }
+
+    @Test
+    public void dropsSecretsPastTheTimeToLive() throws InterruptedException {
+        enable(0, 10);
+        cache.put(key(1), secret(1));
+        Thread.sleep(10);
+
+        assertNull(cache.lookup(key(1)));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void servesStaleSecretsUpToTheMaximumStaleAge() throws InterruptedException {
+        cache.configure(true, 0, 10, true, 3600);
+        cache.put(key(1), secret(1));
+        Thread.sleep(10);
+
+        final SecretCache.Hit hit = cache.lookup(key(1));
+
+        assertNotNull(hit);
+        assertFalse(hit.isFresh());
+        assertTrue(hit.getAgeMillis() >= 10);
+        assertEquals(0, cache.getFreshMillis(key(1)));
+
+        cache.configure(true, 0, 10, true, 0);
+        assertNull(cache.lookup(key(1)));
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedEntry() {
+        enable(300, 2);
+        cache.put(key(1), secret(1));
+        cache.put(key(2), secret(2));
+        assertNotNull(cache.lookup(key(1)));
+        cache.put(key(3), secret(3));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.lookup(key(1)));
+        assertNull(cache.lookup(key(2)));
+        assertNotNull(cache.lookup(key(3)));
+    }
+
+    @Test
+    public void shrinksToTheNewMaximum() {
+        cache.put(key(1), secret(1));
+        cache.put(key(2), secret(2));
+        cache.put(key(3), secret(3));
+        enable(300, 1);
+
+        assertEquals(1, cache.size());
+        assertNotNull(cache.lookup(key(3)));
+    }
+
+    @Test
+    public void keysTheFieldsCaseInsensitivelyAndInAnyOrder() {
+        final SecretCache.Key fields = new SecretCache.Key(API, 1, "credential", Arrays.asList("Password", "username"));
+
+        cache.put(fields, secret(1));
+
+        assertNotNull(cache.lookup(new SecretCache.Key(API, 1, "credential", Arrays.asList("USERNAME", "password"))));
+        assertNull(cache.lookup(key(1)));
+        assertEquals(key(1), fields.withoutFields());
+    }
+
+    @Test
+    public void invalidatesEveryEntryOfTheSecret() {
+        final SecretCache.Key fields = new SecretCache.Key(API, 1, "credential", Collections.singletonList("password"));
+
+        cache.put(key(1), secret(1));
+        cache.put(fields, secret(1));
+        cache.put(new SecretCache.Key(API, 1, "other credential"), secret(1));
+        cache.put(key(2), secret(2));
+
+        assertEquals(3, cache.invalidate(1).size());
+        assertEquals(1, cache.size());
+        assertNotNull(cache.lookup(key(2)));
+        assertTrue(cache.invalidate(1).isEmpty());
+    }
+
+    @Test
+    public void refusesSecretsInvalidatedWhileTheyWereFetched() {
+        final long sequence = SecretInvalidation.current();
+
+        SecretInvalidation.invalidate(Collections.singleton(1), false);
+        cache.put(key(1), secret(1), sequence);
+        cache.put(key(2), secret(2), sequence);
+
+        assertNull(cache.lookup(key(1)));
+        assertNotNull(cache.lookup(key(2)));
+
+        cache.put(key(1), secret(1), SecretInvalidation.current());
+        assertNotNull(cache.lookup(key(1)));
+    }
+
+    @Test
+    public void tellsHowLongAnEntryStaysFresh() {
+        assertEquals(-1, cache.getFreshMillis(key(1)));
+        cache.put(key(1), secret(1));
+
+        final long fresh = cache.getFreshMillis(key(1));
+
+        assertTrue(fresh > 0 && fresh <= 300_000);
+        assertEquals(new HashSet<>(Collections.singletonList(key(1))), new HashSet<>(cache.invalidate(1)));
+        assertEquals(-1, cache.getFreshMillis(key(1)));
+    }
+
+    private void enable(final int ttlSeconds, final int maxEntries) {
+        cache.configure(true, ttlSeconds, maxEntries, false, 0);
+    }
+
+    static SecretCache.Key key(final int secretId) {
+        return new SecretCache.Key(API, secretId, "credential");
+    }
+
+    static SecretData secret(final int id) {
+        return new SecretData(id, "secret " + id,
+                Arrays.asList(new SecretData.Field("Username", "username", "user-" + id, false),
+                        new SecretData.Field("Password", "password", "password-" + id, false)));
+    }
+}
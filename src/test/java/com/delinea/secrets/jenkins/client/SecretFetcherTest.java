@@ -0,0 +1,163 @@
+package com.delinea.secrets.jenkins.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import com.delinea.secrets.jenkins.FakeSecretServer;
+
+import hudson.util.Secret;
+
+public class SecretFetcherTest {
+    private static final String USERNAME = "jenkins", PASSWORD = "password";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private final SecretCache cache = SecretCache.get();
+    private FakeSecretServer server;
+    private SecretServerClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeSecretServer(USERNAME, PASSWORD).addSecret(12, "Database", fields("old"));
+        client = SecretServerClients.get(server.getUrl() + "/api/v1", server.getUrl() + "/oauth2/token",
+                "secret-server", USERNAME, Secret.fromString(PASSWORD));
+        // everything is stale right away, and served stale for an hour
+        cache.configure(true, 0, 10, true, 3600);
+    }
+
+    @After
+    public void tearDown() {
+        cache.configure(false, SecretCache.DEFAULT_TTL_SECONDS, SecretCache.DEFAULT_MAX_ENTRIES, false,
+                SecretCache.DEFAULT_MAX_STALE_SECONDS);
+        SecretFetcher.configure(0);
+        server.close();
+    }
+
+    @Test
+    public void fetchesOnlyTheFieldsThatAreNeeded() throws Exception {
+        SecretFetcher.configure(SecretFetcher.DEFAULT_MAX_PROJECTED_FIELDS);
+
+        final SecretData secret = SecretFetcher.fetch(client, 12, Arrays.asList("Password"), new FetchTiming());
+
+        assertEquals("old", password(secret));
+        assertNull(secret.getField("username"));
+        assertEquals(1, server.getRequestCount(FakeSecretServer.FIELD));
+        assertEquals(0, server.getRequestCount(FakeSecretServer.SECRET));
+    }
+
+    @Test
+    public void fetchesTheWholeSecretWhenAFieldIsNotFoundBySlug() throws Exception {
+        SecretFetcher.configure(SecretFetcher.DEFAULT_MAX_PROJECTED_FIELDS);
+
+        final SecretData secret = SecretFetcher.fetch(client, 12, Arrays.asList("password", "Notes"),
+                new FetchTiming());
+
+        assertEquals("old", password(secret));
+        assertEquals("user", secret.getField("username").getValue());
+        assertEquals(1, server.getRequestCount(FakeSecretServer.SECRET));
+    }
+
+    @Test
+    public void fetchesWholeSecretsWhenTooManyFieldsAreNeeded() throws Exception {
+        SecretFetcher.configure(1);
+
+        SecretFetcher.fetch(client, 12, Arrays.asList("username", "password"), new FetchTiming());
+
+        assertEquals(0, server.getRequestCount(FakeSecretServer.FIELD));
+        assertEquals(1, server.getRequestCount(FakeSecretServer.SECRET));
+    }
+
+    @Test(timeout = 30000)
+    public void servesStaleSecretsWhileRevalidatingThem() throws Exception {
+        assertEquals("old", password(SecretFetcher.fetch(client, 12)));
+        server.addSecret(12, "Database", fields("new"));
+        Thread.sleep(10);
+
+        assertEquals("old", password(SecretFetcher.fetch(client, 12)));
+        while (!"new".equals(password(cache.lookup(key(12)).getSecret()))) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void keepsServingStaleSecretsDuringAnOutage() throws Exception {
+        SecretFetcher.fetch(client, 12);
+        Thread.sleep(10);
+        server.setErrors(1, 503);
+
+        try {
+            SecretFetcher.refresh(client, key(12));
+            fail();
+        } catch (final IOException e) {
+            assertTrue(SecretFetcher.isOutage(e));
+            assertFalse(SecretFetcher.isRevoked(e));
+        }
+        assertNotNull(cache.lookup(key(12)));
+        assertEquals("old", password(SecretFetcher.fetch(client, 12)));
+    }
+
+    @Test
+    public void evictsDeletedSecrets() throws Exception {
+        SecretFetcher.fetch(client, 12);
+        server.removeSecret(12);
+
+        assertRevoked();
+    }
+
+    @Test
+    public void evictsSecretsTheCredentialMayNoLongerRead() throws Exception {
+        SecretFetcher.fetch(client, 12);
+        server.setErrors(1, 403);
+
+        assertRevoked();
+    }
+
+    private void assertRevoked() throws InterruptedException {
+        Thread.sleep(10);
+        try {
+            SecretFetcher.refresh(client, key(12));
+            fail();
+        } catch (final IOException e) {
+            assertTrue(SecretFetcher.isRevoked(e));
+            assertFalse(SecretFetcher.isOutage(e));
+        }
+        assertNull(cache.lookup(key(12)));
+        try {
+            SecretFetcher.fetch(client, 12);
+            fail("the secret is not served stale anymore");
+        } catch (final IOException expected) {
+        }
+    }
+
+    private SecretCache.Key key(final int secretId) {
+        return new SecretCache.Key(client.getApiRootUrl(), secretId, client.getCredentialIdentity());
+    }
+
+    private static String password(final SecretData secret) {
+        return secret.getField("password").getValue();
+    }
+
+    private static Map<String, String> fields(final String password) {
+        final Map<String, String> fields = new LinkedHashMap<>();
+
+        fields.put("Username", "user");
+        fields.put("Password", password);
+        return fields;
+    }
+}
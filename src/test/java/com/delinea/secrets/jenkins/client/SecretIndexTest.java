@@ -0,0 +1,118 @@
+package com.delinea.secrets.jenkins.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import com.delinea.secrets.jenkins.FakeSecretServer;
+
+import hudson.util.Secret;
+
+public class SecretIndexTest {
+    private static final String USERNAME = "jenkins", PASSWORD = "password";
+    private static final Map<String, String> FIELDS = Collections.singletonMap("Password", "password");
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private final SecretIndex index = SecretIndex.get();
+    private FakeSecretServer server;
+    private SecretServerClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeSecretServer(USERNAME, PASSWORD).addFolder(1, "\\Jenkins")
+                .addFolder(2, "\\Jenkins\\Production").addFolder(3, "\\Other\\Production")
+                .addSecret(10, "Database", 2, FIELDS).addSecret(11, "Queue", 2, FIELDS)
+                .addSecret(12, "Database", 3, FIELDS).addSecret(13, "Build Agent", 1, FIELDS);
+        client = SecretServerClients.get(server.getUrl() + "/api/v1", server.getUrl() + "/oauth2/token",
+                "secret-server", USERNAME, Secret.fromString(PASSWORD));
+        index.configure(SecretIndex.DEFAULT_TTL_SECONDS);
+    }
+
+    @After
+    public void tearDown() {
+        index.configure(SecretIndex.DEFAULT_TTL_SECONDS);
+        server.close();
+    }
+
+    @Test
+    public void takesIdsAsTheyAre() throws IOException {
+        assertEquals(42, index.resolve(client, " 42 "));
+        assertEquals(0, server.getRequestCount(FakeSecretServer.SEARCH));
+    }
+
+    @Test
+    public void resolvesPathsWithEitherSeparator() throws IOException {
+        assertEquals(10, index.resolve(client, "\\Jenkins\\Production\\Database"));
+        assertEquals(12, index.resolve(client, "/other/production/database"));
+        assertEquals(13, index.resolve(client, "Jenkins/Build Agent"));
+    }
+
+    @Test
+    public void indexesTheWholeFolderOnTheFirstLookup() throws IOException {
+        assertEquals(10, index.resolve(client, "\\Jenkins\\Production\\Database"));
+
+        final long searches = server.getRequestCount(FakeSecretServer.SEARCH),
+                folders = server.getRequestCount(FakeSecretServer.FOLDERS);
+
+        assertEquals(11, index.resolve(client, "\\Jenkins\\Production\\Queue"));
+        assertEquals(10, index.resolve(client, "\\Jenkins\\Production\\Database"));
+        assertEquals(searches, server.getRequestCount(FakeSecretServer.SEARCH));
+        assertEquals(folders, server.getRequestCount(FakeSecretServer.FOLDERS));
+    }
+
+    @Test
+    public void looksUpExpiredEntriesAgain() throws IOException, InterruptedException {
+        index.configure(0);
+        assertEquals(10, index.resolve(client, "\\Jenkins\\Production\\Database"));
+        server.removeSecret(10).addSecret(20, "Database", 2, FIELDS);
+        Thread.sleep(10);
+
+        assertEquals(20, index.resolve(client, "\\Jenkins\\Production\\Database"));
+    }
+
+    @Test
+    public void resolvesUniqueNamesWithoutAFolder() throws IOException {
+        assertEquals(11, index.resolve(client, "queue"));
+        assertFails("Database", "More than one secret");
+        assertFails("\\Jenkins\\Production\\Missing", "not found");
+        assertFails("\\Jenkins\\Missing\\Database", "not found");
+    }
+
+    @Test
+    public void searchesEveryPage() throws IOException, InterruptedException {
+        // more secrets with the name in theirs than fit on a page, with the one named that on the last page
+        for (int i = 1; i <= 120; i++) {
+            server.addSecret(100 + i, "Message Queue " + i, FIELDS);
+        }
+        server.removeSecret(11).addSecret(300, "Queue", FIELDS);
+
+        assertEquals(300, index.resolve(client, "Queue"));
+        assertTrue(server.getRequestCount(FakeSecretServer.SEARCH) > 1);
+
+        server.addSecret(301, "queue", 3, FIELDS);
+        index.configure(0);
+        Thread.sleep(10);
+        assertFails("Queue", "More than one secret");
+    }
+
+    private void assertFails(final String reference, final String message) {
+        try {
+            index.resolve(client, reference);
+            fail(reference + " resolved");
+        } catch (final IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+}
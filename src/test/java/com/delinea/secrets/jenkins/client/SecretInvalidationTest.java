@@ -0,0 +1,119 @@
+package com.delinea.secrets.jenkins.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import com.delinea.secrets.jenkins.FakeSecretServer;
+
+import hudson.util.Secret;
+
+public class SecretInvalidationTest {
+    private static final String USERNAME = "jenkins", PASSWORD = "password";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private final SecretCache cache = SecretCache.get();
+    private FakeSecretServer server;
+    private SecretServerClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeSecretServer(USERNAME, PASSWORD).addSecret(12, "Database", fields("old"))
+                .addSecret(34, "Other", fields("other"));
+        client = SecretServerClients.get(server.getUrl() + "/api/v1", server.getUrl() + "/oauth2/token",
+                "secret-server", USERNAME, Secret.fromString(PASSWORD));
+        cache.configure(true, 300, 10, false, 0);
+        SecretFetcher.configure(SecretFetcher.DEFAULT_MAX_PROJECTED_FIELDS);
+    }
+
+    @After
+    public void tearDown() {
+        SecretFetcher.configure(0);
+        cache.configure(false, SecretCache.DEFAULT_TTL_SECONDS, SecretCache.DEFAULT_MAX_ENTRIES, false,
+                SecretCache.DEFAULT_MAX_STALE_SECONDS);
+        server.close();
+    }
+
+    @Test
+    public void evictsEveryEntryOfTheSecret() throws IOException {
+        // the fields first, since they would be served from the whole secret
+        SecretFetcher.fetch(client, 12, Collections.singletonList("password"), new FetchTiming());
+        SecretFetcher.fetch(client, 12);
+        SecretFetcher.fetch(client, 34);
+        server.addSecret(12, "Database", fields("new"));
+
+        final SecretInvalidation.Result result = SecretInvalidation.invalidate(Collections.singleton(12), false);
+
+        assertEquals(2, result.getEvicted());
+        assertEquals(0, result.getRefreshing());
+        assertNull(cache.lookup(key(12)));
+        assertNotNull(cache.lookup(key(34)));
+        assertEquals("new", SecretFetcher.fetch(client, 12).getField("password").getValue());
+    }
+
+    @Test
+    public void evictsNothingForSecretsThatArentCached() {
+        final SecretInvalidation.Result result = SecretInvalidation.invalidate(Arrays.asList(56, 78), true);
+
+        assertEquals(0, result.getEvicted());
+        assertEquals(0, result.getRefreshing());
+    }
+
+    @Test
+    public void marksTheSecretsInvalidatedSinceASequenceNumber() {
+        final long before = SecretInvalidation.current();
+
+        SecretInvalidation.invalidate(Collections.singleton(12), false);
+
+        assertTrue(SecretInvalidation.current() > before);
+        assertTrue(SecretInvalidation.isInvalidatedSince(12, before));
+        assertFalse(SecretInvalidation.isInvalidatedSince(12, SecretInvalidation.current()));
+        assertFalse(SecretInvalidation.isInvalidatedSince(34, before));
+    }
+
+    @Test(timeout = 30000)
+    public void refreshesTheEvictedEntriesInTheBackground() throws Exception {
+        SecretFetcher.fetch(client, 12);
+        server.addSecret(12, "Database", fields("new"));
+
+        final SecretInvalidation.Result result = SecretInvalidation.invalidate(Collections.singleton(12), true);
+
+        assertEquals(1, result.getEvicted());
+        assertEquals(1, result.getRefreshing());
+
+        SecretCache.Hit hit;
+
+        while ((hit = cache.lookup(key(12))) == null) {
+            Thread.sleep(10);
+        }
+        assertEquals("new", hit.getSecret().getField("password").getValue());
+    }
+
+    private SecretCache.Key key(final int secretId) {
+        return new SecretCache.Key(client.getApiRootUrl(), secretId, client.getCredentialIdentity());
+    }
+
+    private static Map<String, String> fields(final String password) {
+        final Map<String, String> fields = new LinkedHashMap<>();
+
+        fields.put("Username", "user");
+        fields.put("Password", password);
+        return fields;
+    }
+}
@@ -0,0 +1,97 @@
+package com.delinea.secrets.jenkins.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import com.delinea.secrets.jenkins.FakeSecretServer;
+
+import hudson.util.Secret;
+
+public class SecretPreRefresherTest {
+    private static final String USERNAME = "jenkins", PASSWORD = "password";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private final SecretCache cache = SecretCache.get();
+    private FakeSecretServer server;
+    private SecretServerClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeSecretServer(USERNAME, PASSWORD).addSecret(12, "Database", password("old"))
+                .addSecret(34, "Queue", password("old"));
+        client = SecretServerClients.get(server.getUrl() + "/api/v1", server.getUrl() + "/oauth2/token",
+                "secret-server", USERNAME, Secret.fromString(PASSWORD));
+        // both expire before the run after next
+        cache.configure(true, 30, 10, false, SecretCache.DEFAULT_MAX_STALE_SECONDS);
+        // one at a time
+        SecretPreRefresher.configure(true, 1);
+    }
+
+    @After
+    public void tearDown() {
+        SecretPreRefresher.configure(false, SecretPreRefresher.DEFAULT_THREADS);
+        cache.configure(false, SecretCache.DEFAULT_TTL_SECONDS, SecretCache.DEFAULT_MAX_ENTRIES, false,
+                SecretCache.DEFAULT_MAX_STALE_SECONDS);
+        server.close();
+    }
+
+    @Test(timeout = 30000)
+    public void refreshesTheHottestSecretsFirst() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            SecretFetcher.fetch(client, 12);
+        }
+        SecretFetcher.fetch(client, 34);
+        server.addSecret(12, "Database", password("new")).addSecret(34, "Queue", password("new"));
+        // so that the first refresh is still running when the second would start
+        server.setLatency(500).resetRequestCounts();
+
+        SecretPreRefresher.run();
+        while (!"new".equals(cachedPassword(12))) {
+            Thread.sleep(10);
+        }
+        assertEquals("the other one waits for a later run", "old", cachedPassword(34));
+        assertEquals(1, server.getRequestCount(FakeSecretServer.SECRET));
+    }
+
+    @Test
+    public void leavesSecretsThatAreNotAboutToExpire() throws Exception {
+        cache.configure(true, 3600, 10, false, SecretCache.DEFAULT_MAX_STALE_SECONDS);
+        SecretFetcher.fetch(client, 12);
+        server.resetRequestCounts();
+
+        SecretPreRefresher.run();
+        Thread.sleep(100);
+        assertEquals(0, server.getRequestCount(FakeSecretServer.SECRET));
+    }
+
+    @Test
+    public void forgetsEveryKeyWhenDisabled() throws Exception {
+        SecretFetcher.fetch(client, 12);
+        assertEquals(1, SecretPreRefresher.size());
+
+        SecretPreRefresher.configure(false, 1);
+        assertEquals(0, SecretPreRefresher.size());
+        SecretFetcher.fetch(client, 34);
+        assertEquals(0, SecretPreRefresher.size());
+    }
+
+    private String cachedPassword(final int secretId) {
+        return cache.lookup(new SecretCache.Key(client.getApiRootUrl(), secretId, client.getCredentialIdentity()))
+                .getSecret().getField("password").getValue();
+    }
+
+    private static Map<String, String> password(final String password) {
+        return Collections.singletonMap("Password", password);
+    }
+}
@@ -0,0 +1,208 @@
+package com.delinea.secrets.jenkins.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.junit.Test;
+
+public class SingleFlightTest {
+    private static final int WAITERS = 8;
+
+    private final SingleFlight<String, String> flight = new SingleFlight<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+
+    @Test(timeout = 10000)
+    public void coalescesConcurrentCalls() throws Exception {
+        final FutureTask<String> leader = start(() -> flight.run("key", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "value";
+        }));
+        final List<FutureTask<String>> waiters = waiters(() -> flight.run("key", () -> {
+            calls.incrementAndGet();
+            return "own value";
+        }));
+
+        release.countDown();
+        assertEquals("value", leader.get());
+        for (final FutureTask<String> waiter : waiters) {
+            assertEquals("value", waiter.get());
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test(timeout = 10000)
+    public void sharesFailures() throws Exception {
+        final IOException failure = new IOException("Secret Server is down");
+        final FutureTask<String> leader = start(() -> flight.run("key", () -> {
+            started.countDown();
+            await(release);
+            throw failure;
+        }));
+        final List<FutureTask<String>> waiters = waiters(() -> flight.run("key", () -> "own value"));
+
+        release.countDown();
+        assertSame(failure, cause(leader));
+        for (final FutureTask<String> waiter : waiters) {
+            final Throwable shared = cause(waiter);
+
+            // each waiter gets its own exception, with the leader's as the cause
+            assertTrue(shared instanceof IOException);
+            assertNotSame(failure, shared);
+            assertSame(failure, shared.getCause());
+            assertEquals(failure.getMessage(), shared.getMessage());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void sharesTimeouts() throws Exception {
+        final FutureTask<String> leader = start(() -> flight.run("key", () -> {
+            started.countDown();
+            await(release);
+            throw new SocketTimeoutException("Read timed out");
+        }));
+        final List<FutureTask<String>> waiters = waiters(() -> flight.run("key", () -> {
+            calls.incrementAndGet();
+            return "own value";
+        }));
+
+        release.countDown();
+        assertTrue(cause(leader) instanceof SocketTimeoutException);
+        for (final FutureTask<String> waiter : waiters) {
+            assertTrue(cause(waiter).getCause() instanceof SocketTimeoutException);
+        }
+        assertEquals(0, calls.get());
+    }
+
+    @Test(timeout = 10000)
+    public void sharesRuntimeExceptions() throws Exception {
+        final FutureTask<String> leader = start(() -> flight.run("key", () -> {
+            started.countDown();
+            await(release);
+            throw new IllegalStateException("bug");
+        }));
+        final List<FutureTask<String>> waiters = waiters(() -> flight.run("key", () -> "own value"));
+
+        release.countDown();
+        assertTrue(cause(leader) instanceof IllegalStateException);
+        for (final FutureTask<String> waiter : waiters) {
+            assertTrue(cause(waiter).getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void retriesWhenTheLeaderIsAborted() throws Exception {
+        final FutureTask<String> leader = start(() -> flight.run("key", () -> {
+            started.countDown();
+            await(release);
+            throw new InterruptedIOException("build aborted");
+        }));
+        final List<FutureTask<String>> waiters = waiters(() -> flight.run("key", () -> {
+            calls.incrementAndGet();
+            return "value";
+        }));
+
+        release.countDown();
+        assertTrue(cause(leader) instanceof InterruptedIOException);
+        for (final FutureTask<String> waiter : waiters) {
+            assertEquals("value", waiter.get());
+        }
+        // one waiter led the retry, and the others shared it unless it was over already
+        assertTrue(calls.get() >= 1 && calls.get() <= WAITERS);
+    }
+
+    @Test
+    public void callsAgainOnceTheCallIsOver() throws IOException {
+        assertEquals("1", flight.run("key", () -> String.valueOf(calls.incrementAndGet())));
+        assertEquals("2", flight.run("key", () -> String.valueOf(calls.incrementAndGet())));
+        try {
+            flight.run("key", () -> {
+                throw new IOException("failed");
+            });
+            fail();
+        } catch (final IOException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertEquals("3", flight.run("key", () -> String.valueOf(calls.incrementAndGet())));
+    }
+
+    @Test
+    public void abortsAreInterruptionsButNotTimeouts() {
+        assertTrue(SingleFlight.isAbort(new InterruptedIOException()));
+        assertTrue(SingleFlight.isAbort(new ClosedByInterruptException()));
+        assertTrue(SingleFlight.isAbort(new CancellationException()));
+        assertFalse(SingleFlight.isAbort(new SocketTimeoutException()));
+        assertFalse(SingleFlight.isAbort(new ConnectTimeoutException()));
+        assertFalse(SingleFlight.isAbort(new IOException()));
+    }
+
+    /**
+     * Starts the waiters once the leader's call started, and returns when they
+     * are all waiting for it.
+     */
+    private List<FutureTask<String>> waiters(final Callable<String> waiter) throws InterruptedException {
+        final List<FutureTask<String>> waiters = new ArrayList<>();
+        final List<Thread> threads = new ArrayList<>();
+
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < WAITERS; i++) {
+            final FutureTask<String> task = new FutureTask<>(waiter);
+            final Thread thread = new Thread(task);
+
+            thread.start();
+            waiters.add(task);
+            threads.add(thread);
+        }
+        for (final Thread thread : threads) {
+            while (thread.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+        }
+        return waiters;
+    }
+
+    private static FutureTask<String> start(final Callable<String> call) {
+        final FutureTask<String> task = new FutureTask<>(call);
+
+        new Thread(task).start();
+        return task;
+    }
+
+    private static Throwable cause(final FutureTask<String> task) throws InterruptedException {
+        try {
+            task.get();
+            throw new AssertionError("Expected a failure");
+        } catch (final ExecutionException e) {
+            return e.getCause();
+        }
+    }
+
+    private static void await(final CountDownLatch latch) throws InterruptedIOException {
+        try {
+            latch.await();
+        } catch (final InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+}
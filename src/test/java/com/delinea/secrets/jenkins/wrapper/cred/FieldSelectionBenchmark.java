@@ -0,0 +1,73 @@
+package com.delinea.secrets.jenkins.wrapper.cred;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.delinea.secrets.jenkins.client.SecretData;
+
+/**
+ * Selecting the fields of a secret: the mappings of {@link ServerBuildWrapper}
+ * and the username and password of the credentials, which is what
+ * {@code VaultClient.fetchCredentials} does.
+ * <p>
+ * The fields that are looked up are spread evenly over the secret, the last
+ * one included.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FieldSelectionBenchmark {
+    @Param({ "10", "100", "1000" })
+    public int fields;
+
+    @Param({ "1", "10" })
+    public int mappings;
+
+    private SecretData secret;
+    private List<ServerSecret.Mapping> mapped;
+    private String usernameSlug, passwordSlug;
+
+    @Setup
+    public void setUp() {
+        final List<SecretData.Field> items = new ArrayList<>();
+
+        for (int i = 0; i < fields; i++) {
+            items.add(new SecretData.Field("Field " + i, "field-" + i, "value-" + i, false));
+        }
+        secret = new SecretData(1, "benchmark", items);
+        mapped = new ArrayList<>();
+        for (int i = 1; i <= mappings; i++) {
+            // alternately by name and by slug, in another case than the field's
+            final int field = i * fields / mappings - 1;
+
+            mapped.add(new ServerSecret.Mapping("VARIABLE_" + i, i % 2 == 0 ? "FIELD " + field : "Field-" + field));
+        }
+        usernameSlug = "field-" + (fields / 2 - 1);
+        passwordSlug = "Field " + (fields - 1);
+    }
+
+    @Benchmark
+    public void mapFields(final Blackhole blackhole) {
+        ServerBuildWrapper.mapFields(secret, mapped, (environmentVariable, value) -> blackhole.consume(value));
+    }
+
+    @Benchmark
+    public void selectUsernameAndPassword(final Blackhole blackhole) {
+        blackhole.consume(secret.getField(usernameSlug));
+        blackhole.consume(secret.getField(passwordSlug));
+    }
+}
@@ -0,0 +1,152 @@
+package com.delinea.secrets.jenkins.wrapper.cred;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.jenkinsci.plugins.credentialsbinding.masking.SecretPatterns;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compiling and applying the masks of a build log.
+ * <p>
+ * The stream benchmarks write a log of {@link #LOG_SIZE} bytes, a line per
+ * write, so their score times {@link #LOG_SIZE} is the masking throughput in
+ * bytes per second. One line in ten contains a value to mask.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MaskingBenchmark {
+    static final int LOG_SIZE = 1 << 20;
+
+    private static final String VALUE_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789!#$%&()*+-./=?@[]^_{|}~";
+    private static final String TEXT_CHARS = "abcdefghijklmnopqrstuvwxyz      0123456789:/.-";
+
+    @Param({ "1", "10", "100", "1000" })
+    public int secrets;
+
+    @Param({ "80", "1024", "65536" })
+    public int lineLength;
+
+    private List<String> values;
+    private byte[] log;
+    // where each line of the log starts, with the end of the log last
+    private int[] lines;
+    private SecretMatcher matcher;
+    private Pattern pattern;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        final List<Integer> starts = new ArrayList<>();
+        final StringBuilder text = new StringBuilder(LOG_SIZE + lineLength);
+
+        values = new ArrayList<>();
+        for (int i = 0; i < secrets; i++) {
+            values.add(randomString(random, VALUE_CHARS, 8 + random.nextInt(25)));
+        }
+        for (int line = 0; text.length() < LOG_SIZE; line++) {
+            final StringBuilder content = new StringBuilder(randomString(random, TEXT_CHARS, lineLength - 1));
+
+            if (line % 10 == 0) {
+                final String value = values.get(random.nextInt(secrets));
+                final int at = random.nextInt(Math.max(1, content.length() - value.length()));
+
+                content.replace(at, Math.min(content.length(), at + value.length()), value);
+            }
+            starts.add(text.length());
+            text.append(content).append('\n');
+        }
+        starts.add(text.length());
+        log = text.toString().getBytes(StandardCharsets.UTF_8);
+        lines = starts.stream().mapToInt(Integer::intValue).toArray();
+        matcher = new SecretMatcher(values, StandardCharsets.UTF_8);
+        pattern = ServerConsoleLogFilter.getAggregateSecretPattern(values);
+    }
+
+    @Benchmark
+    public Pattern aggregateSecretPattern() {
+        return ServerConsoleLogFilter.getAggregateSecretPattern(values);
+    }
+
+    @Benchmark
+    public void escapeSpecialCharacters(final Blackhole blackhole) {
+        for (final String value : values) {
+            blackhole.consume(ServerConsoleLogFilter.escapeSpecialCharacters(value));
+        }
+    }
+
+    @Benchmark
+    public SecretMatcher buildMatcher() {
+        return new SecretMatcher(values, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public long maskWithMatcher() throws IOException {
+        final Sink sink = new Sink();
+
+        try (OutputStream out = new MaskingOutputStream(sink, () -> matcher)) {
+            writeLog(out);
+        }
+        return sink.count;
+    }
+
+    @Benchmark
+    public long maskWithPattern() throws IOException {
+        final Sink sink = new Sink();
+
+        try (OutputStream out = new SecretPatterns.MaskingOutputStream(sink, () -> pattern, "UTF-8")) {
+            writeLog(out);
+        }
+        return sink.count;
+    }
+
+    private void writeLog(final OutputStream out) throws IOException {
+        for (int i = 0; i + 1 < lines.length; i++) {
+            out.write(log, lines[i], lines[i + 1] - lines[i]);
+        }
+    }
+
+    private static String randomString(final Random random, final String chars, final int length) {
+        final StringBuilder builder = new StringBuilder(length);
+
+        for (int i = 0; i < length; i++) {
+            builder.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Counts what is written to it, and discards it.
+     */
+    private static final class Sink extends OutputStream {
+        long count;
+
+        @Override
+        public void write(final int b) {
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            count += len;
+        }
+    }
+}
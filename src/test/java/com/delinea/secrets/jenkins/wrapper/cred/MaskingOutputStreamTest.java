@@ -0,0 +1,146 @@
+package com.delinea.secrets.jenkins.wrapper.cred;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class MaskingOutputStreamTest {
+    private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+    @Test
+    public void passesThroughWithoutMatcher() throws IOException {
+        try (MaskingOutputStream out = new MaskingOutputStream(log, () -> null)) {
+            write(out, "nothing to mask");
+        }
+        assertEquals("nothing to mask", log());
+    }
+
+    @Test
+    public void masksValuesSplitAcrossWrites() throws IOException {
+        try (MaskingOutputStream out = stream("secret")) {
+            write(out, "password: sec");
+            write(out, "r");
+            write(out, "et!");
+        }
+        assertEquals("password: ****!", log());
+    }
+
+    @Test
+    public void masksValuesWrittenByteByByte() throws IOException {
+        try (MaskingOutputStream out = stream("secret")) {
+            for (final byte b : "a secret, another secret".getBytes(StandardCharsets.UTF_8)) {
+                out.write(b);
+            }
+        }
+        assertEquals("a ****, another ****", log());
+    }
+
+    @Test
+    public void flushKeepsThePossibleStartOfAValue() throws IOException {
+        try (MaskingOutputStream out = stream("secret")) {
+            write(out, "log sec");
+            out.flush();
+            assertEquals("log ", log());
+            write(out, "ret and more");
+            out.flush();
+            assertEquals("log **** and more", log());
+        }
+    }
+
+    @Test
+    public void closeWritesTheHeldBackTail() throws IOException {
+        try (MaskingOutputStream out = stream("secret")) {
+            write(out, "ends with sec");
+        }
+        assertEquals("ends with sec", log());
+    }
+
+    @Test
+    public void masksValuesAcrossTheWindow() throws IOException {
+        final String value = repeat('s', 100) + "secret" + repeat('t', 100);
+        final String input = repeat('x', 8150) + value + repeat('y', 20000) + value;
+
+        try (MaskingOutputStream out = stream(value)) {
+            // a first write that leaves a tail, then writes larger than the window
+            write(out, input.substring(0, 8200));
+            write(out, input.substring(8200, 28400));
+            write(out, input.substring(28400));
+        }
+        assertEquals(repeat('x', 8150) + SecretMatcher.MASK + repeat('y', 20000) + SecretMatcher.MASK, log());
+    }
+
+    @Test
+    public void drainsTheTailWhenThereIsNothingToMaskAnymore() throws IOException {
+        final AtomicReference<SecretMatcher> matcher = new AtomicReference<>(matcher("secret"));
+
+        try (MaskingOutputStream out = new MaskingOutputStream(log, matcher::get)) {
+            write(out, "a sec");
+            matcher.set(null);
+            write(out, "ret");
+        }
+        assertEquals("a secret", log());
+    }
+
+    @Test
+    public void matchesTheRegularExpressionWhateverTheWritesAndFlushes() throws IOException {
+        final Random random = new Random(10);
+
+        for (int iteration = 0; iteration < 500; iteration++) {
+            final List<String> values = SecretMatcherTest.randomValues(random, "ab", 1 + random.nextInt(4),
+                    1 + random.nextInt(iteration % 10 == 0 ? 5000 : 8));
+            final String input = SecretMatcherTest.randomString(random, "abc", random.nextInt(20000));
+            final byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+
+            log.reset();
+            try (MaskingOutputStream out = new MaskingOutputStream(log,
+                    () -> new SecretMatcher(values, StandardCharsets.UTF_8))) {
+                for (int off = 0; off < bytes.length;) {
+                    final int len = Math.min(bytes.length - off, 1 + random.nextInt(random.nextBoolean() ? 16 : 10000));
+
+                    out.write(bytes, off, len);
+                    off += len;
+                    if (random.nextInt(4) == 0) {
+                        out.flush();
+                    }
+                }
+            }
+            assertEquals("iteration " + iteration, SecretMatcherTest.regex(input, values), log());
+        }
+    }
+
+    private MaskingOutputStream stream(final String value) {
+        final SecretMatcher matcher = matcher(value);
+
+        return new MaskingOutputStream(log, () -> matcher);
+    }
+
+    private static SecretMatcher matcher(final String value) {
+        return new SecretMatcher(Collections.singletonList(value), StandardCharsets.UTF_8);
+    }
+
+    private static void write(final MaskingOutputStream out, final String s) throws IOException {
+        final byte[] b = s.getBytes(StandardCharsets.UTF_8);
+
+        out.write(b, 0, b.length);
+    }
+
+    private String log() {
+        return new String(log.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String repeat(final char c, final int count) {
+        final char[] chars = new char[count];
+
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
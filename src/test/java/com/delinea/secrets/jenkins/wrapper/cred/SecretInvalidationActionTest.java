@@ -0,0 +1,138 @@
+package com.delinea.secrets.jenkins.wrapper.cred;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+
+import com.delinea.secrets.jenkins.client.SecretCache;
+import com.delinea.secrets.jenkins.client.SecretData;
+import com.gargoylesoftware.htmlunit.HttpMethod;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+
+public class SecretInvalidationActionTest {
+    private static final String API = "https://secretserver.example.com/api/v1";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private final SecretCache cache = SecretCache.get();
+
+    @Before
+    public void setUp() {
+        j.jenkins.setSecurityRealm(j.createDummySecurityRealm());
+        j.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy().grant(Jenkins.ADMINISTER).everywhere()
+                .to("admin").grant(Jenkins.READ).everywhere().to("reader"));
+        cache.configure(true, 300, 10, false, 0);
+        for (final int id : new int[] { 12, 34, 56 }) {
+            cache.put(key(id), new SecretData(id, "secret " + id,
+                    Collections.singletonList(new SecretData.Field("Password", "password", "password", false))));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        cache.configure(false, SecretCache.DEFAULT_TTL_SECONDS, SecretCache.DEFAULT_MAX_ENTRIES, false,
+                SecretCache.DEFAULT_MAX_STALE_SECONDS);
+    }
+
+    @Test
+    public void evictsASecret() throws Exception {
+        final JSONObject result = JSONObject.fromObject(post("admin", "{\"secretId\": 12}", 200).getContentAsString());
+
+        assertEquals(Collections.singletonList(12), result.getJSONArray("secretIds"));
+        assertEquals(1, result.getInt("evicted"));
+        assertEquals(0, result.getInt("refreshing"));
+        assertNull(cache.lookup(key(12)));
+        assertNotNull(cache.lookup(key(34)));
+    }
+
+    @Test
+    public void evictsSeveralSecrets() throws Exception {
+        final JSONObject result = JSONObject
+                .fromObject(post("admin", "{\"secretIds\": [12, 34], \"action\": \"evict\"}", 200)
+                        .getContentAsString());
+
+        assertEquals(2, result.getInt("evicted"));
+        assertNull(cache.lookup(key(12)));
+        assertNull(cache.lookup(key(34)));
+        assertNotNull(cache.lookup(key(56)));
+    }
+
+    @Test
+    public void takesABareArrayOfIds() throws Exception {
+        final JSONObject result = JSONObject.fromObject(post("admin", "[34, 56, 78]", 200).getContentAsString());
+
+        assertEquals(Arrays.asList(34, 56, 78), result.getJSONArray("secretIds"));
+        assertEquals(2, result.getInt("evicted"));
+        assertNotNull(cache.lookup(key(12)));
+    }
+
+    @Test
+    public void refreshesOnlyTheSecretsItHasAClientFor() throws Exception {
+        // nothing was fetched with a client for this server, so there is nothing to refresh with
+        final JSONObject result = JSONObject
+                .fromObject(post("admin", "{\"secretId\": 12, \"action\": \"refresh\"}", 200).getContentAsString());
+
+        assertEquals(1, result.getInt("evicted"));
+        assertEquals(0, result.getInt("refreshing"));
+        assertNull(cache.lookup(key(12)));
+    }
+
+    @Test
+    public void rejectsInvalidEvents() throws Exception {
+        post("admin", "not json", 400);
+        post("admin", "{\"action\": \"evict\"}", 400);
+        post("admin", "{\"secretId\": \"twelve\"}", 400);
+        post("admin", "{\"secretId\": 12, \"action\": \"purge\"}", 400);
+        assertNotNull(cache.lookup(key(12)));
+    }
+
+    @Test
+    public void needsAdministerPermission() throws Exception {
+        post("reader", "{\"secretId\": 12}", 403);
+        assertNotNull(cache.lookup(key(12)));
+    }
+
+    @Test
+    public void onlyTakesPosts() throws Exception {
+        final JenkinsRule.WebClient webClient = j.createWebClient().withBasicApiToken("admin")
+                .withThrowExceptionOnFailingStatusCode(false);
+
+        assertEquals(405, webClient.getPage(new WebRequest(new URL(j.getURL(), "secret-server/invalidate")))
+                .getWebResponse().getStatusCode());
+        assertNotNull(cache.lookup(key(12)));
+    }
+
+    private WebResponse post(final String user, final String body, final int expectedStatus) throws Exception {
+        final JenkinsRule.WebClient webClient = j.createWebClient().withBasicApiToken(user)
+                .withThrowExceptionOnFailingStatusCode(false);
+        final WebRequest request = new WebRequest(new URL(j.getURL(), "secret-server/invalidate"), HttpMethod.POST);
+
+        request.setAdditionalHeader("Content-Type", "application/json");
+        request.setRequestBody(body);
+
+        final WebResponse response = webClient.getPage(request).getWebResponse();
+
+        assertEquals(body, expectedStatus, response.getStatusCode());
+        return response;
+    }
+
+    private static SecretCache.Key key(final int secretId) {
+        return new SecretCache.Key(API, secretId, "credential");
+    }
+}
@@ -0,0 +1,175 @@
+package com.delinea.secrets.jenkins.wrapper.cred;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class SecretMatcherTest {
+    @Test
+    public void masksEveryOccurrence() throws IOException {
+        assertEquals("user **** and **** again", mask("user secret and secret again", "secret"));
+    }
+
+    @Test
+    public void leftmostMatchWins() throws IOException {
+        assertEquals("****d", mask("abcd", "bcd", "abc"));
+        assertEquals("a****", mask("abcd", "bcd", "cd"));
+    }
+
+    @Test
+    public void firstValueWinsAtTheSamePosition() throws IOException {
+        assertEquals("****c", mask("abc", "ab", "abc"));
+        assertEquals("****", mask("abc", "abc", "ab"));
+    }
+
+    @Test
+    public void valueInsideAnotherValue() throws IOException {
+        assertEquals("x****x", mask("xabcx", "abc", "b"));
+        assertEquals("x****x", mask("xabcx", "b", "abc"));
+    }
+
+    @Test
+    public void ignoresNullAndEmptyValues() throws IOException {
+        final SecretMatcher matcher = new SecretMatcher(Arrays.asList(null, ""), StandardCharsets.UTF_8);
+
+        assertTrue(matcher.isEmpty());
+        assertEquals(0, matcher.getMaxLength());
+        assertEquals("unchanged", mask("unchanged", null, ""));
+    }
+
+    @Test
+    public void masksMultiByteCharacters() throws IOException {
+        assertEquals("mot de passe: ****, ok", mask("mot de passe: été€, ok", "été€"));
+        assertEquals("pass ****!", mask("pass 秘密!", "秘密"));
+    }
+
+    @Test
+    public void supportsUtf8AndSingleByteCharsets() {
+        assertTrue(SecretMatcher.supports(StandardCharsets.UTF_8));
+        assertTrue(SecretMatcher.supports(StandardCharsets.ISO_8859_1));
+        assertTrue(SecretMatcher.supports(StandardCharsets.US_ASCII));
+        assertFalse(SecretMatcher.supports(StandardCharsets.UTF_16));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnsupportedCharsets() {
+        new SecretMatcher(Arrays.asList("secret"), StandardCharsets.UTF_16);
+    }
+
+    @Test
+    public void holdsBackTheStartOfAValue() throws IOException {
+        final SecretMatcher matcher = new SecretMatcher(Arrays.asList("secret"), StandardCharsets.UTF_8);
+        final byte[] b = "log sec".getBytes(StandardCharsets.UTF_8);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(4, matcher.mask(b, 0, b.length, false, out));
+        assertEquals("log ", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void masksTheLongestValueAtTheEndOfTheBytes() throws IOException {
+        final SecretMatcher matcher = new SecretMatcher(Arrays.asList("secret", "sec"), StandardCharsets.UTF_8);
+        final byte[] b = "log secret".getBytes(StandardCharsets.UTF_8);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // nothing that follows can make a better match, so there is no tail
+        assertEquals(b.length, matcher.mask(b, 0, b.length, false, out));
+        assertEquals("log ****", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void holdsBackLessThanTheLongestValue() throws IOException {
+        final Random random = new Random(10);
+
+        for (int iteration = 0; iteration < 5000; iteration++) {
+            final List<String> values = randomValues(random, "ab", 1 + random.nextInt(5), 5);
+            final SecretMatcher matcher = new SecretMatcher(values, StandardCharsets.UTF_8);
+            final byte[] b = randomString(random, "abc", random.nextInt(60)).getBytes(StandardCharsets.UTF_8);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int off = 0, end = 0;
+
+            // in chunks, passing each tail again with the next one
+            while (end < b.length) {
+                end = Math.min(b.length, end + 1 + random.nextInt(8));
+                final int tail = matcher.mask(b, off, end - off, false, out);
+
+                assertTrue(values + " held back " + (end - tail), end - tail < matcher.getMaxLength());
+                off = tail;
+            }
+            matcher.mask(b, off, b.length - off, true, out);
+            final String input = new String(b, StandardCharsets.UTF_8);
+
+            assertEquals(values + " in " + input, regex(input, values), out.toString("UTF-8"));
+        }
+    }
+
+    @Test
+    public void matchesTheRegularExpressionOnRandomInput() throws IOException {
+        final Random random = new Random(8);
+
+        for (int iteration = 0; iteration < 5000; iteration++) {
+            final List<String> values = randomValues(random, "ab", 1 + random.nextInt(5), 5);
+            final String input = randomString(random, "abc", random.nextInt(60));
+
+            assertEquals(values + " in " + input, regex(input, values),
+                    mask(input, values.toArray(new String[0])));
+        }
+    }
+
+    static List<String> randomValues(final Random random, final String alphabet, final int count,
+            final int maxLength) {
+        final List<String> values = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            values.add(randomString(random, alphabet, 1 + random.nextInt(maxLength)));
+        }
+        return values;
+    }
+
+    static String randomString(final Random random, final String alphabet, final int length) {
+        final StringBuilder s = new StringBuilder(length);
+
+        for (int i = 0; i < length; i++) {
+            s.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return s.toString();
+    }
+
+    /**
+     * @return what {@link SecretMatcher} is equivalent to
+     */
+    static String regex(final String input, final List<String> values) {
+        final List<String> nonEmpty = values.stream().filter(value -> value != null && !value.isEmpty())
+                .map(Pattern::quote).collect(Collectors.toList());
+
+        if (nonEmpty.isEmpty()) {
+            return input;
+        }
+        return Pattern.compile(String.join("|", nonEmpty)).matcher(input)
+                .replaceAll(Matcher.quoteReplacement(SecretMatcher.MASK));
+    }
+
+    private static String mask(final String input, final String... values) throws IOException {
+        final Charset charset = StandardCharsets.UTF_8;
+        final SecretMatcher matcher = new SecretMatcher(Arrays.asList(values), charset);
+        final byte[] b = input.getBytes(charset);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        matcher.mask(b, b.length, out);
+        return new String(out.toByteArray(), charset);
+    }
+}
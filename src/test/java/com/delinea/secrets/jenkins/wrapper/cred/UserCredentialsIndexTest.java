@@ -0,0 +1,74 @@
+package com.delinea.secrets.jenkins.wrapper.cred;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import com.cloudbees.plugins.credentials.Credentials;
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+
+public class UserCredentialsIndexTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void picksUpEditedCredentials() throws IOException {
+        final SystemCredentialsProvider provider = SystemCredentialsProvider.getInstance();
+
+        assertNull(UserCredentialsIndex.forContext(null).get("secret-server"));
+
+        provider.getCredentials().add(credential("old"));
+        provider.save();
+        assertEquals("old", password());
+
+        provider.getCredentials().set(0, credential("new"));
+        provider.save();
+        assertEquals("new", password());
+
+        provider.getCredentials().clear();
+        provider.save();
+        assertNull(UserCredentialsIndex.forContext(null).get("secret-server"));
+    }
+
+    @Test
+    public void picksUpChangesThatWereNotSaved() throws IOException, InterruptedException {
+        final List<Credentials> credentials = SystemCredentialsProvider.getInstance().getCredentials();
+
+        credentials.add(credential("old"));
+        SystemCredentialsProvider.getInstance().save();
+        assertEquals("old", password());
+
+        credentials.set(0, credential("new"));
+        Thread.sleep(1100);
+        assertEquals("new", password());
+    }
+
+    @Test
+    public void keepsTheIndexWhenNothingChanged() throws IOException {
+        SystemCredentialsProvider.getInstance().getCredentials().add(credential("old"));
+        SystemCredentialsProvider.getInstance().save();
+
+        final Map<String, UserCredentials> indexed = UserCredentialsIndex.forContext(null);
+
+        // e.g. a folder was saved
+        UserCredentialsIndex.invalidate();
+        assertSame(indexed, UserCredentialsIndex.forContext(null));
+    }
+
+    private static String password() {
+        return UserCredentialsIndex.forContext(null).get("secret-server").getPassword().getPlainText();
+    }
+
+    private static UserCredentials credential(final String password) {
+        return new UserCredentials(CredentialsScope.GLOBAL, "secret-server", null, "jenkins", password);
+    }
+}